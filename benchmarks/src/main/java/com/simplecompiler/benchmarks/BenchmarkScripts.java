@@ -0,0 +1,79 @@
+package com.simplecompiler.benchmarks;
+
+/**
+ * Generates benchmark scripts of configurable size.<br>
+ * Scripts follow the shape of the fibCalc, testForLoop and printMathResultOfTwoValues test sources.
+ *
+ * @author Dmitry
+ */
+public class BenchmarkScripts {
+
+    public static String recursion(int n) {
+        return "(fun nfibs (n)\n"
+                + "    (if (= n 0)\n"
+                + "        0\n"
+                + "        (if (< n 2)\n"
+                + "            1\n"
+                + "            (+ (nfibs (- n 1)) (nfibs (- n 2))))))\n"
+                + "\n"
+                + "(fun main()\n"
+                + "    (print (nfibs " + n + ")))\n";
+    }
+
+    public static String loop(int iterations) {
+        return "(fun main()\n"
+                + "    (var sum 0)\n"
+                + "    (for (var x 0) (< x " + iterations + ") (var x (+ x 1))\n"
+                + "        (var sum (+ sum x)))\n"
+                + "    (print sum))\n";
+    }
+
+    public static String arithmetic(int iterations) {
+        return "(var seed 7)\n"
+                + "\n"
+                + "(fun main()\n"
+                + "    (var value seed)\n"
+                + "    (for (var x 0) (< x " + iterations + ") (var x (+ x 1))\n"
+                + "        (var value (bitxor (+ (* value 31) x) (>> value 3)))\n"
+                + "        (var value (- value (/ value 7)))\n"
+                + "        (var value (bitand (<< value 1) 0x7FFFFFF)))\n"
+                + "    (print value))\n";
+    }
+
+    /**
+     * Loop that calls native function on every iteration
+     *
+     * @param nativeFunction [print] with Object[] parameter or [sink] with int parameter
+     */
+    public static String nativeCalls(int iterations, String nativeFunction) {
+        return "(fun main()\n"
+                + "    (for (var x 0) (< x " + iterations + ") (var x (+ x 1))\n"
+                + "        (" + nativeFunction + " x)))\n";
+    }
+
+    /**
+     * Source with many functions and globals, used to measure parsing, compilation and loading
+     */
+    public static String library(int functionsCount) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < functionsCount; i++) {
+            sb.append("(var global").append(i).append(" ").append(i).append(")\n");
+        }
+
+        for (int i = 0; i < functionsCount; i++) {
+            sb.append("; helper function number ").append(i).append("\n");
+            sb.append("(fun helper").append(i).append("(a b)\n");
+            sb.append("    (var local (+ a (* b 0x1F)))\n");
+            sb.append("    (if (< local global").append(i).append(")\n");
+            sb.append("        (- local 0b101)\n");
+            sb.append("        (bitxor local (>> b 2))))\n\n");
+        }
+
+        sb.append("(fun main()\n");
+        for (int i = 0; i < functionsCount; i++) {
+            sb.append("    (print (helper").append(i).append(" ").append(i).append(" global").append(i).append("))\n");
+        }
+        sb.append(")\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package com.simplecompiler.benchmarks;
+
+import com.simplecompiler.frontend.FrontendCompiler;
+import com.simplecompiler.interpreter.BytecodeLoader;
+import com.simplecompiler.interpreter.CompiledProgram;
+import com.simplecompiler.interpreter.ConsoleFunctions;
+import com.simplecompiler.interpreter.Interpreter;
+import com.simplecompiler.interpreter.PrintFunctions;
+import com.simplecompiler.interpreter.ProgramExecutor;
+import com.simplecompiler.jvm.JvmExecutor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pure execution of already loaded programs by the Interpreter and by the JVM backend
+ *
+ * @author Dmitry
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecuteBenchmark {
+
+    @State(Scope.Thread)
+    public abstract static class ScriptState {
+
+        @Param({"interpreter", "jvm"})
+        public String backend;
+
+        ProgramExecutor executor;
+        SinkFunctions sink;
+        CompiledProgram program;
+
+        void prepare(String source) throws IOException {
+            program = new BytecodeLoader().load(new FrontendCompiler().compile(source, "benchmark.scs"));
+            executor = backend.equals("jvm") ? new JvmExecutor() : new Interpreter();
+            sink = new SinkFunctions();
+            executor.getNativeFunctionManager().registerFunctions(sink);
+        }
+
+        int execute() {
+            executor.execute(program);
+            return sink.lastValue;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RecursionState extends ScriptState {
+
+        @Param({"15", "20", "25"})
+        public int n;
+
+        @Setup
+        public void setup() throws IOException {
+            prepare(BenchmarkScripts.recursion(n));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LoopState extends ScriptState {
+
+        @Param({"1000", "100000"})
+        public int iterations;
+
+        @Setup
+        public void setup() throws IOException {
+            prepare(BenchmarkScripts.loop(iterations));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ArithmeticState extends ScriptState {
+
+        @Param({"1000", "100000"})
+        public int iterations;
+
+        @Setup
+        public void setup() throws IOException {
+            prepare(BenchmarkScripts.arithmetic(iterations));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NativeCallsState extends ScriptState {
+
+        @Param({"print", "sink"})
+        public String nativeFunction;
+
+        @Setup
+        public void setup() throws IOException {
+            prepare(BenchmarkScripts.nativeCalls(100000, nativeFunction));
+        }
+    }
+
+    /**
+     * Formatted output of print to a stream that discards bytes
+     */
+    @State(Scope.Thread)
+    public static class OutputState {
+
+        @Param({"interpreter", "jvm"})
+        public String backend;
+
+        @Param({"console", "buffered"})
+        public String output;
+
+        ProgramExecutor executor;
+        CompiledProgram program;
+
+        @Setup
+        public void setup() throws IOException {
+            program = new BytecodeLoader().load(new FrontendCompiler().compile(BenchmarkScripts.nativeCalls(100000, "print"), "benchmark.scs"));
+            executor = backend.equals("jvm") ? new JvmExecutor() : new Interpreter();
+            OutputStream discard = new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            };
+            executor.getNativeFunctionManager().registerFunctions(output.equals("buffered")
+                    ? new PrintFunctions(Channels.newChannel(discard))
+                    : new ConsoleFunctions(new PrintStream(discard)));
+        }
+    }
+
+    @Benchmark
+    public int recursion(RecursionState state) {
+        return state.execute();
+    }
+
+    @Benchmark
+    public int loop(LoopState state) {
+        return state.execute();
+    }
+
+    @Benchmark
+    public int arithmetic(ArithmeticState state) {
+        return state.execute();
+    }
+
+    @Benchmark
+    public int nativeCalls(NativeCallsState state) {
+        return state.execute();
+    }
+
+    @Benchmark
+    public void output(OutputState state) {
+        state.executor.execute(state.program);
+    }
+}
@@ -0,0 +1,130 @@
+package com.simplecompiler.benchmarks;
+
+import com.simplecompiler.frontend.FrontendCompiler;
+import com.simplecompiler.interpreter.BytecodeLoader;
+import com.simplecompiler.interpreter.CompiledProgram;
+import com.simplecompiler.interpreter.Interpreter;
+import com.simplecompiler.interpreter.NativeFunction;
+import com.simplecompiler.interpreter.ScriptExecutorService;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of many short script runs whose native function blocks, as on file or network reads:
+ * thread per run of ScriptExecutorService (virtual threads on Java 21+) against the fixed pool of platform threads.
+ * One operation is a batch of runs, results are comparable only for the same [runs].
+ *
+ * @author Dmitry
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    private static final int RUNS = 1000;
+    private static final int MAX_RUNNING_TASKS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class ExecutorState {
+
+        @Param({"script-executor", "fixed-pool"})
+        public String executor;
+
+        @Param({"0", "1"})
+        public int blockingMillis;
+
+        ExecutorService executorService;
+        ScriptExecutorService scriptExecutorService;
+        CompiledProgram program;
+
+        @Setup
+        public void setup() throws IOException {
+            program = new BytecodeLoader().load(new FrontendCompiler().compile("(fun nfibs (n) (if (< n 2) n (+ (nfibs (- n 1)) (nfibs (- n 2)))))\n"
+                    + "(fun main() (print (nfibs (read))))", "executor.scs"));
+            if (executor.equals("script-executor")) {
+                scriptExecutorService = new ScriptExecutorService(MAX_RUNNING_TASKS);
+                executorService = scriptExecutorService;
+            } else {
+                executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public int blockingRuns(ExecutorState state) throws InterruptedException, ExecutionException {
+        List<Future<BlockingFunctions>> futures = new ArrayList<>(RUNS);
+        for (int i = 0; i < RUNS; i++) {
+            futures.add(state.executorService.submit(new ScriptRun(state.program, new BlockingFunctions(state.blockingMillis))));
+        }
+        int sum = 0;
+        for (Future<BlockingFunctions> future : futures) {
+            sum += future.get().lastValue;
+        }
+        return sum;
+    }
+
+    /**
+     * Run of the script, the same task is given to both executors
+     */
+    private static class ScriptRun implements Callable<BlockingFunctions> {
+
+        private final CompiledProgram program;
+        private final BlockingFunctions functions;
+
+        ScriptRun(CompiledProgram program, BlockingFunctions functions) {
+            this.program = program;
+            this.functions = functions;
+        }
+
+        @Override
+        public BlockingFunctions call() {
+            Interpreter interpreter = new Interpreter();
+            interpreter.getNativeFunctionManager().registerFunctions(functions);
+            interpreter.execute(program);
+            return functions;
+        }
+    }
+
+    public static class BlockingFunctions extends SinkFunctions {
+
+        private final int blockingMillis;
+
+        public BlockingFunctions(int blockingMillis) {
+            this.blockingMillis = blockingMillis;
+        }
+
+        @NativeFunction(name = "read")
+        public int read() throws InterruptedException {
+            if (blockingMillis > 0) {
+                Thread.sleep(blockingMillis);
+            }
+            return 15;
+        }
+    }
+}
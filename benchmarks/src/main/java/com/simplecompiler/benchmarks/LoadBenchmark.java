@@ -0,0 +1,76 @@
+package com.simplecompiler.benchmarks;
+
+import com.simplecompiler.frontend.FrontendCompiler;
+import com.simplecompiler.interpreter.BinaryProgramLoader;
+import com.simplecompiler.interpreter.BinaryProgramWriter;
+import com.simplecompiler.interpreter.BytecodeLoader;
+import com.simplecompiler.interpreter.CompiledProgram;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading of already compiled bytecode: textual form, binary form from memory and memory mapped .scb file
+ *
+ * @author Dmitry
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int functionsCount;
+
+    private String bytecode;
+    private byte[] binaryProgram;
+    private File binaryProgramFile;
+
+    @Setup
+    public void setup() throws IOException {
+        bytecode = new FrontendCompiler().compile(BenchmarkScripts.library(functionsCount), "library.scs");
+        CompiledProgram program = new BytecodeLoader().load(bytecode);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new BinaryProgramWriter().write(program, outputStream);
+        binaryProgram = outputStream.toByteArray();
+        binaryProgramFile = File.createTempFile("library", ".scb");
+        new BinaryProgramWriter().write(program, binaryProgramFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        binaryProgramFile.delete();
+    }
+
+    @Benchmark
+    public CompiledProgram loadText() {
+        return new BytecodeLoader().load(bytecode);
+    }
+
+    @Benchmark
+    public CompiledProgram loadBinary() {
+        return new BinaryProgramLoader().load(ByteBuffer.wrap(binaryProgram), "library.scb");
+    }
+
+    @Benchmark
+    public CompiledProgram loadBinaryFile() throws IOException {
+        return new BinaryProgramLoader().load(binaryProgramFile);
+    }
+}
@@ -0,0 +1,45 @@
+package com.simplecompiler.benchmarks;
+
+import com.simplecompiler.frontend.SExpressionReader;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of the source to AST, without code generation
+ *
+ * @author Dmitry
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int functionsCount;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkScripts.library(functionsCount);
+    }
+
+    @Benchmark
+    public Object parse() throws IOException {
+        return new SExpressionReader(source).readAll();
+    }
+}
@@ -0,0 +1,28 @@
+package com.simplecompiler.benchmarks;
+
+import com.simplecompiler.interpreter.NativeFunction;
+
+/**
+ * Native print that only remembers the last value, so output does not affect measurements.
+ *
+ * @author Dmitry
+ */
+public class SinkFunctions {
+
+    public int lastValue;
+    public int printCount;
+
+    @NativeFunction(name = "print")
+    public void print(Object[] args) {
+        for (Object arg : args) {
+            lastValue = (Integer) arg;
+            printCount++;
+        }
+    }
+
+    @NativeFunction(name = "sink")
+    public void sink(int value) {
+        lastValue = value;
+        printCount++;
+    }
+}
@@ -1,11 +1,122 @@
 package com.simplecompiler;
 
+import com.simplecompiler.frontend.CompilationCache;
+import com.simplecompiler.frontend.FrontendCompiler;
+import com.simplecompiler.interpreter.BytecodeLoader;
+import com.simplecompiler.interpreter.ExecutionProfile;
+import com.simplecompiler.interpreter.Interpreter;
+import com.simplecompiler.interpreter.PrintFunctions;
+import com.simplecompiler.optimizer.OptimizationResult;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
 /**
+ * Command line: compiles script and executes it, or prints its bytecode.<br>
+ * Usage: [--cache-dir DIR] [--cache-size BYTES] [--bytecode] [--inline-threshold N] [--remove-unused] [--optimize] [--profile] [--collapsed-stacks OUT_FILE] FILE.scs
+ *
  * @author Dmitry
  */
 public class CompilerParserMain {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (Arrays.asList(args).contains("--profile") || Arrays.asList(args).contains("--collapsed-stacks")) {
+            //should be set before Interpreter class is initialized
+            System.setProperty("simplecompiler.profiling", "true");
+        }
+        int exitCode = run(args, System.out, System.err);
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) throws IOException {
+        File cacheDirectory = null;
+        long cacheSize = CompilationCache.DEFAULT_MAX_SIZE;
+        boolean printBytecode = false;
+        int inlineThreshold = 0;
+        boolean removeUnusedCode = false;
+        boolean optimize = false;
+        boolean printProfile = false;
+        File collapsedStacksFile = null;
+        File sourceFile = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--cache-dir") && i + 1 < args.length) {
+                cacheDirectory = new File(args[++i]);
+            } else if (arg.equals("--cache-size") && i + 1 < args.length) {
+                cacheSize = Long.parseLong(args[++i]);
+            } else if (arg.equals("--bytecode")) {
+                printBytecode = true;
+            } else if (arg.equals("--inline-threshold") && i + 1 < args.length) {
+                inlineThreshold = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--remove-unused")) {
+                removeUnusedCode = true;
+            } else if (arg.equals("--optimize")) {
+                optimize = true;
+            } else if (arg.equals("--profile")) {
+                printProfile = true;
+            } else if (arg.equals("--collapsed-stacks") && i + 1 < args.length) {
+                collapsedStacksFile = new File(args[++i]);
+            } else if (!arg.startsWith("--") && sourceFile == null) {
+                sourceFile = new File(arg);
+            } else {
+                return printUsage(err);
+            }
+        }
+        if (sourceFile == null) {
+            return printUsage(err);
+        }
+
+        String source = new String(Files.readAllBytes(sourceFile.toPath()), StandardCharsets.UTF_8);
+        FrontendCompiler compiler = new FrontendCompiler();
+        compiler.setInlineThreshold(inlineThreshold);
+        compiler.setRemoveUnusedCode(removeUnusedCode);
+        compiler.setOptimize(optimize);
+        String bytecode;
+        if (cacheDirectory != null) {
+            bytecode = new CompilationCache(cacheDirectory, cacheSize).compile(compiler, source, sourceFile.getName());
+        } else if (optimize) {
+            OptimizationResult optimizationResult = compiler.compileOptimized(source, sourceFile.getName());
+            err.print(optimizationResult.toReport());
+            bytecode = optimizationResult.getBytecode();
+        } else {
+            bytecode = compiler.compile(source, sourceFile.getName());
+        }
+        if (printBytecode) {
+            out.print(bytecode);
+            return 0;
+        }
+
+        Interpreter interpreter = new Interpreter();
+        PrintFunctions printFunctions = new PrintFunctions(Channels.newChannel(out));
+        interpreter.getNativeFunctionManager().registerFunctions(printFunctions);
+        try {
+            if (!printProfile && collapsedStacksFile == null) {
+                interpreter.execute(bytecode);
+                return 0;
+            }
+
+            ExecutionProfile profile = interpreter.profile(new BytecodeLoader().load(bytecode));
+            if (printProfile) {
+                err.print(profile.toReport());
+            }
+            if (collapsedStacksFile != null) {
+                Files.write(collapsedStacksFile.toPath(), profile.toCollapsedStacks().getBytes(StandardCharsets.UTF_8));
+            }
+            return 0;
+        } finally {
+            //output printed before an error, executors flush PrintFunctions themselves
+            out.flush();
+        }
+    }
 
+    private static int printUsage(PrintStream err) {
+        err.println("Usage: CompilerParserMain [--cache-dir DIR] [--cache-size BYTES] [--bytecode] [--inline-threshold N] [--remove-unused] [--optimize] [--profile] [--collapsed-stacks OUT_FILE] FILE.scs");
+        return 1;
     }
 }
@@ -0,0 +1,233 @@
+package com.simplecompiler.frontend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simplifies AST before code generation: folds expressions with literal operands using the same int semantics as the interpreter,
+ * applies algebraic identities (x*1, x+0...) and replaces [if] with constant condition by the taken branch.
+ *
+ * @author Dmitry
+ */
+public class AstSimplifier {
+
+    public Object simplify(Object ast) {
+        if (!(ast instanceof List)) {
+            return ast;
+        }
+
+        List list = (List) ast;
+        if (list.isEmpty() || !(list.get(0) instanceof String)) {
+            return ast;
+        }
+
+        String operator = (String) list.get(0);
+        List<Object> result = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            boolean isFunctionParameters = FrontendCompiler.isFunctionDefinition(operator) && i == 2;
+            result.add(i == 0 || isFunctionParameters ? list.get(i) : simplify(list.get(i)));
+        }
+
+        switch (operator) {
+            case "if":
+                return simplifyIf(result);
+            case "not":
+                return simplifyNot(result);
+            case "+":
+            case "-":
+            case "/":
+            case "*":
+            case "=":
+            case "!=":
+            case "<":
+            case ">":
+            case "and":
+            case "or":
+            case "bitand":
+            case "bitor":
+            case "bitxor":
+            case "<<":
+            case ">>":
+            case ">>>":
+                return simplifyBinaryExpression(operator, result);
+            default:
+                return result;
+        }
+    }
+
+    private Object simplifyIf(List<Object> list) {
+        if (list.size() != 4 || !isIntLiteral(list.get(1))) {
+            return list;
+        }
+
+        int takenBranch = toInt(list.get(1)) != 0 ? 2 : 3;
+        int droppedBranch = takenBranch == 2 ? 3 : 2;
+        //variables are registered while compiling, so branch with [var] cannot be dropped
+        if (containsVar(list.get(droppedBranch))) {
+            return list;
+        }
+        return list.get(takenBranch);
+    }
+
+    private Object simplifyNot(List<Object> list) {
+        if (list.size() == 2 && isIntLiteral(list.get(1))) {
+            return String.valueOf(toInt(list.get(1)) == 0 ? 1 : 0);
+        }
+        return list;
+    }
+
+    private Object simplifyBinaryExpression(String operator, List<Object> list) {
+        if (list.size() != 3) {
+            return list;
+        }
+
+        Object arg1 = list.get(1);
+        Object arg2 = list.get(2);
+        if (isIntLiteral(arg1) && isIntLiteral(arg2)) {
+            String folded = fold(operator, toInt(arg1), toInt(arg2));
+            if (folded != null) {
+                return folded;
+            }
+            return list;
+        }
+
+        switch (operator) {
+            case "+":
+            case "bitor":
+            case "bitxor":
+                if (isLiteral(arg2, 0)) {
+                    return arg1;
+                }
+                if (isLiteral(arg1, 0)) {
+                    return arg2;
+                }
+                break;
+            case "-":
+            case "<<":
+            case ">>":
+            case ">>>":
+                if (isLiteral(arg2, 0)) {
+                    return arg1;
+                }
+                break;
+            case "*":
+                if (isLiteral(arg2, 1)) {
+                    return arg1;
+                }
+                if (isLiteral(arg1, 1)) {
+                    return arg2;
+                }
+                //x*0 is kept: the other operand can have side effects, and a name is checked only by code generation
+                break;
+            case "/":
+                if (isLiteral(arg2, 1)) {
+                    return arg1;
+                }
+                break;
+            default:
+                break;
+        }
+        return list;
+    }
+
+    /**
+     * @return folded value, or null if expression should be left for runtime
+     */
+    private String fold(String operator, int arg1, int arg2) {
+        int result;
+        switch (operator) {
+            case "+":
+                result = arg1 + arg2;
+                break;
+            case "-":
+                result = arg1 - arg2;
+                break;
+            case "*":
+                result = arg1 * arg2;
+                break;
+            case "/":
+                if (arg2 == 0) {
+                    //keep division by zero error at runtime
+                    return null;
+                }
+                result = arg1 / arg2;
+                break;
+            case "<":
+                result = arg1 < arg2 ? 1 : 0;
+                break;
+            case ">":
+                result = arg1 > arg2 ? 1 : 0;
+                break;
+            case "=":
+                result = arg1 == arg2 ? 1 : 0;
+                break;
+            case "!=":
+                result = arg1 != arg2 ? 1 : 0;
+                break;
+            case "and":
+                result = arg1 != 0 && arg2 != 0 ? 1 : 0;
+                break;
+            case "or":
+                result = arg1 != 0 || arg2 != 0 ? 1 : 0;
+                break;
+            case "bitand":
+                result = arg1 & arg2;
+                break;
+            case "bitor":
+                result = arg1 | arg2;
+                break;
+            case "bitxor":
+                result = arg1 ^ arg2;
+                break;
+            case "<<":
+                result = arg1 << arg2;
+                break;
+            case ">>":
+                result = arg1 >> arg2;
+                break;
+            case ">>>":
+                result = arg1 >>> arg2;
+                break;
+            default:
+                return null;
+        }
+        return String.valueOf(result);
+    }
+
+    private boolean containsVar(Object ast) {
+        if (!(ast instanceof List)) {
+            return false;
+        }
+
+        List list = (List) ast;
+        if (!list.isEmpty() && "var".equals(list.get(0))) {
+            return true;
+        }
+        for (Object child : list) {
+            if (containsVar(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isLiteral(Object ast, int value) {
+        return isIntLiteral(ast) && toInt(ast) == value;
+    }
+
+    private boolean isIntLiteral(Object ast) {
+        if (!(ast instanceof String) || !FrontendCompiler.mayBeNumber((String) ast)) {
+            return false;
+        }
+        try {
+            Integer.parseInt((String) ast);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private int toInt(Object ast) {
+        return Integer.parseInt((String) ast);
+    }
+}
@@ -0,0 +1,55 @@
+package com.simplecompiler.frontend;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Serializes generated code to the textual bytecode. Instructions are written one by one,
+ * so with Writer as output the whole text is never kept in memory.
+ *
+ * @author Dmitry
+ */
+public class BytecodeWriter {
+
+    private final Appendable out;
+
+    public BytecodeWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes initialization of global variables followed by the top level forms, every form is followed by an empty line
+     */
+    public void writeProgram(List<GlobalVar> globalVariables, List<InstructionList> forms) throws IOException {
+        if (!globalVariables.isEmpty()) {
+            out.append("$global-var-count ").append(String.valueOf(globalVariables.size())).append('\n');
+            out.append("label INIT_BLOCK\n");
+            out.append("enter 0 0\n");
+            for (GlobalVar globalVariable : globalVariables) {
+                write(globalVariable.getCode());
+            }
+            out.append("leave 0 0\n");
+            out.append('\n');
+        }
+        for (InstructionList form : forms) {
+            if (!form.isEmpty()) {
+                write(form);
+                out.append('\n');
+            }
+        }
+    }
+
+    public void write(InstructionList code) throws IOException {
+        for (Instruction instruction : code.getInstructions()) {
+            write(instruction);
+        }
+    }
+
+    public void write(Instruction instruction) throws IOException {
+        out.append(instruction.getOp().getCommand());
+        for (int i = 0; i < instruction.getOperandsCount(); i++) {
+            out.append(' ').append(String.valueOf(instruction.getOperand(i)));
+        }
+        out.append('\n');
+    }
+}
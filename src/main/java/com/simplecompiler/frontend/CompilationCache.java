@@ -0,0 +1,167 @@
+package com.simplecompiler.frontend;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On-disk cache of compiled bytecode.<br>
+ * Entry is keyed by SHA-256 of the source, FrontendCompiler.VERSION and compiler options.
+ * Entries are written to a temporary file and atomically renamed, so several processes can share one directory
+ * and a reader sees either a complete entry or nothing.
+ * Last modification time of an entry is updated on every hit, when total size exceeds the limit least recently used entries are deleted.
+ *
+ * @author Dmitry
+ */
+public class CompilationCache {
+
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+    private static final String ENTRY_EXTENSION = ".bytecode";
+
+    private final File directory;
+    private final long maxSize;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public CompilationCache(File directory) {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize maximum total size of entries in bytes
+     */
+    public CompilationCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns cached bytecode for the source, or compiles it and stores the result
+     */
+    public String compile(FrontendCompiler compiler, String source, String fileName) throws IOException {
+        String key = computeKey(compiler, source);
+        Path entryPath = new File(directory, key + ENTRY_EXTENSION).toPath();
+        String bytecode = readEntry(entryPath);
+        if (bytecode != null) {
+            hits.incrementAndGet();
+            return bytecode;
+        }
+
+        misses.incrementAndGet();
+        bytecode = compiler.compile(source, fileName);
+        writeEntry(entryPath, bytecode);
+        evict();
+        return bytecode;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    private String computeKey(FrontendCompiler compiler, String source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not supported", ex);
+        }
+        digest.update((FrontendCompiler.VERSION + "\n" + compiler.getOptionsDescription() + "\n").getBytes(StandardCharsets.UTF_8));
+        digest.update(source.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    private String readEntry(Path entryPath) throws IOException {
+        try {
+            byte[] content = Files.readAllBytes(entryPath);
+            entryPath.toFile().setLastModified(System.currentTimeMillis());
+            return new String(content, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException ex) {
+            //not cached yet or evicted by other process
+            return null;
+        }
+    }
+
+    private void writeEntry(Path entryPath, String bytecode) throws IOException {
+        Files.createDirectories(directory.toPath());
+        Path tempPath = Files.createTempFile(directory.toPath(), "entry", ".tmp");
+        try {
+            Files.write(tempPath, bytecode.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tempPath, entryPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempPath, entryPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    private void evict() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        //modification time is read once, other processes can touch entries while they are sorted
+        List<CacheEntry> entries = new ArrayList<>();
+        long totalSize = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(ENTRY_EXTENSION)) {
+                CacheEntry entry = new CacheEntry(file);
+                entries.add(entry);
+                totalSize += entry.size;
+            }
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        Collections.sort(entries, new Comparator<CacheEntry>() {
+            @Override
+            public int compare(CacheEntry entry1, CacheEntry entry2) {
+                return Long.compare(entry1.lastModified, entry2.lastModified);
+            }
+        });
+        for (CacheEntry entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            if (entry.file.delete()) {
+                totalSize -= entry.size;
+            }
+        }
+    }
+
+    private static class CacheEntry {
+
+        final File file;
+        final long size;
+        final long lastModified;
+
+        CacheEntry(File file) {
+            this.file = file;
+            this.size = file.length();
+            this.lastModified = file.lastModified();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.simplecompiler.frontend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drops script functions and global variables that the program never uses.<br>
+ * Reachability is computed over calls and loads of global variables, starting from [main], top level forms that are not functions
+ * and initializers of global variables. Initializer of a global variable that is never loaded is dropped together with the variable
+ * only if it cannot have effects: it has neither calls nor division, that can fail. Indexes of the remaining global variables are renumbered.
+ *
+ * @author Dmitry
+ */
+public class DeadCodeEliminator {
+
+    public static final String MAIN_FUNCTION = "main";
+
+    /**
+     * @param globalVariables global variables in order of their indexes
+     * @param forms compiled top level forms, unused functions are removed from the list, other forms are replaced if indexes of globals are changed
+     * @return global variables that are left, in order of their new indexes
+     */
+    public List<GlobalVar> eliminate(List<GlobalVar> globalVariables, List<InstructionList> forms) {
+        Map<String, InstructionList> functions = new HashMap<>();
+        List<InstructionList> worklist = new ArrayList<>();
+        for (InstructionList form : forms) {
+            String functionName = form.getFunctionName();
+            if (functionName != null) {
+                functions.put(functionName, form);
+            } else {
+                worklist.add(form);
+            }
+        }
+
+        Set<String> usedFunctions = new HashSet<>();
+        if (functions.containsKey(MAIN_FUNCTION)) {
+            usedFunctions.add(MAIN_FUNCTION);
+            worklist.add(functions.get(MAIN_FUNCTION));
+        }
+        boolean[] usedGlobalVariables = new boolean[globalVariables.size()];
+        for (int i = 0; i < globalVariables.size(); i++) {
+            if (hasEffects(globalVariables.get(i).getCode())) {
+                usedGlobalVariables[i] = true;
+                worklist.add(globalVariables.get(i).getCode());
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            for (Instruction instruction : worklist.remove(worklist.size() - 1).getInstructions()) {
+                if (instruction.getOp() == Op.CALL || instruction.getOp() == Op.TAIL_CALL) {
+                    String calleeName = (String) instruction.getOperand(0);
+                    if (functions.containsKey(calleeName) && usedFunctions.add(calleeName)) {
+                        worklist.add(functions.get(calleeName));
+                    }
+                } else if (instruction.getOp() == Op.LOAD_GLOBAL_VAR) {
+                    int index = (Integer) instruction.getOperand(0);
+                    if (!usedGlobalVariables[index]) {
+                        usedGlobalVariables[index] = true;
+                        worklist.add(globalVariables.get(index).getCode());
+                    }
+                }
+            }
+        }
+
+        int[] newIndexes = new int[globalVariables.size()];
+        int usedGlobalVariablesCount = 0;
+        for (int i = 0; i < globalVariables.size(); i++) {
+            newIndexes[i] = usedGlobalVariables[i] ? usedGlobalVariablesCount++ : -1;
+        }
+        boolean renumbered = usedGlobalVariablesCount != globalVariables.size();
+
+        List<GlobalVar> result = new ArrayList<>(usedGlobalVariablesCount);
+        for (int i = 0; i < globalVariables.size(); i++) {
+            GlobalVar globalVariable = globalVariables.get(i);
+            if (usedGlobalVariables[i]) {
+                result.add(renumbered ? new GlobalVar(globalVariable.getGlobalVariableName(), renumberGlobalVariables(globalVariable.getCode(), newIndexes)) : globalVariable);
+            }
+        }
+        for (Iterator<InstructionList> iterator = forms.iterator(); iterator.hasNext();) {
+            String functionName = iterator.next().getFunctionName();
+            if (functionName != null && !usedFunctions.contains(functionName)) {
+                iterator.remove();
+            }
+        }
+        if (renumbered) {
+            for (int i = 0; i < forms.size(); i++) {
+                forms.set(i, renumberGlobalVariables(forms.get(i), newIndexes));
+            }
+        }
+        return result;
+    }
+
+    private boolean hasEffects(InstructionList code) {
+        for (Instruction instruction : code.getInstructions()) {
+            switch (instruction.getOp()) {
+                case CALL:
+                case TAIL_CALL:
+                case DIV:
+                    return true;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return copy of the code with new indexes of global variables, compiled code is not changed because it can be cached
+     */
+    private InstructionList renumberGlobalVariables(InstructionList code, int[] newIndexes) {
+        InstructionList result = new InstructionList();
+        for (Instruction instruction : code.getInstructions()) {
+            if (instruction.getOp() == Op.LOAD_GLOBAL_VAR || instruction.getOp() == Op.STORE_GLOBAL_VAR) {
+                result.add(instruction.getOp(), newIndexes[(Integer) instruction.getOperand(0)]);
+                continue;
+            }
+            Object[] operands = new Object[instruction.getOperandsCount()];
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = instruction.getOperand(i);
+            }
+            result.add(instruction.getOp(), operands);
+        }
+        return result;
+    }
+}
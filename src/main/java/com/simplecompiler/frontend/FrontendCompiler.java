@@ -1,91 +1,247 @@
 package com.simplecompiler.frontend;
 
+import com.simplecompiler.optimizer.OptimizationResult;
+import com.simplecompiler.optimizer.PeepholeOptimizer;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import org.parboiled.Parboiled;
-import org.parboiled.parserunners.BasicParseRunner;
-import org.parboiled.support.ParsingResult;
+import java.util.Map;
 
 /**
  * @author Dmitry
  */
 public class FrontendCompiler {
 
+    /**
+     * Should be changed together with any change of generated bytecode, CompilationCache does not use entries of other versions
+     */
+    public static final String VERSION = "0.1.20";
+
+    private boolean simplifyAst = true;
+    private boolean tailCalls = true;
+    private int inlineThreshold;
+    private boolean removeUnusedCode;
+    private boolean optimize;
+    private final AstSimplifier astSimplifier = new AstSimplifier();
+
+    /**
+     * Enables constant folding and algebraic simplification of AST before code generation. Enabled by default
+     */
+    public void setSimplifyAst(boolean simplifyAst) {
+        this.simplifyAst = simplifyAst;
+    }
+
+    public boolean isSimplifyAst() {
+        return simplifyAst;
+    }
+
+    /**
+     * Enables [tail-call] instruction for calls of script functions in tail position. Enabled by default
+     */
+    public void setTailCalls(boolean tailCalls) {
+        this.tailCalls = tailCalls;
+    }
+
+    public boolean isTailCalls() {
+        return tailCalls;
+    }
+
+    /**
+     * Calls of script functions with at most this number of instructions are replaced by their bodies, if the functions
+     * are not memoized and not recursive. Zero disables inlining, it is disabled by default.
+     * IncrementalCompiler compiles every form separately and does not inline
+     */
+    public void setInlineThreshold(int inlineThreshold) {
+        if (inlineThreshold < 0) {
+            throw new IllegalArgumentException("Inline threshold should not be negative, but found [" + inlineThreshold + "]");
+        }
+        this.inlineThreshold = inlineThreshold;
+    }
+
+    public int getInlineThreshold() {
+        return inlineThreshold;
+    }
+
+    /**
+     * Drops functions that are not reachable from [main] and initializers of global variables, and global variables that are never loaded.
+     * Disabled by default, IncrementalCompiler does not remove code
+     */
+    public void setRemoveUnusedCode(boolean removeUnusedCode) {
+        this.removeUnusedCode = removeUnusedCode;
+    }
+
+    public boolean isRemoveUnusedCode() {
+        return removeUnusedCode;
+    }
+
+    /**
+     * Applies PeepholeOptimizer to the generated bytecode. Disabled by default
+     */
+    public void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+
+    public boolean isOptimize() {
+        return optimize;
+    }
+
+    /**
+     * @return description of all options that affect generated bytecode
+     */
+    public String getOptionsDescription() {
+        return "simplifyAst=" + simplifyAst + ";tailCalls=" + tailCalls + ";inlineThreshold=" + inlineThreshold + ";removeUnusedCode=" + removeUnusedCode
+                + ";optimize=" + optimize;
+    }
+
     public String compile(String source, String fileName) throws IOException {
-        Grammar grammar = Parboiled.createParser(Grammar.class);
-        BasicParseRunner parseRunner = new BasicParseRunner(grammar.start());
-        ParsingResult result = parseRunner.run(source);
-        if (!result.matched) {
-            throw new IllegalArgumentException("Error while parsing source file [" + fileName + "]");
+        StringBuilder result = new StringBuilder();
+        compile(source, fileName, result);
+        return result.toString();
+    }
+
+    /**
+     * Writes bytecode to the output as it is serialized, without building the whole text in memory.
+     * With optimization the text is built, because the optimizer works on the whole bytecode
+     */
+    public void compile(String source, String fileName, Appendable out) throws IOException {
+        if (optimize) {
+            out.append(compileOptimized(source, fileName).getBytecode());
+        } else {
+            generate(source, fileName, out);
         }
+    }
+
+    /**
+     * Compiles the source and applies PeepholeOptimizer to it regardless of setOptimize
+     *
+     * @return optimized bytecode and count of removed instructions per function
+     */
+    public OptimizationResult compileOptimized(String source, String fileName) throws IOException {
+        StringBuilder bytecode = new StringBuilder();
+        generate(source, fileName, bytecode);
+        return new PeepholeOptimizer().optimize(bytecode.toString());
+    }
 
-        List resultValue = (List) result.resultValue;
+    private void generate(String source, String fileName, Appendable out) throws IOException {
+        List resultValue = parse(source, fileName);
         ParsingContext parsingContext = new ParsingContext();
         parsingContext.setFileName(fileName);
         parsingContext.setSource(source);
-        StringBuilder processedSource = new StringBuilder();
+        collectFunctionNames(resultValue, parsingContext);
+        List<InstructionList> forms = new ArrayList<>(resultValue.size());
         for (Object ast : resultValue) {
-            String compiledAst = processAst(ast, parsingContext);
-            if (!compiledAst.isEmpty()) {
-                processedSource.append(compiledAst).append("\n");
-            }
+            forms.add(compileTopLevelForm(ast, parsingContext));
+        }
+        if (inlineThreshold > 0) {
+            new FunctionInliner(this, inlineThreshold).inline(resultValue, forms, parsingContext);
+        }
+        new PurityChecker().check(forms);
+
+        List<GlobalVar> globalVariables = parsingContext.getGlobalVariables();
+        if (removeUnusedCode) {
+            globalVariables = new DeadCodeEliminator().eliminate(globalVariables, forms);
+        }
+        new BytecodeWriter(out).writeProgram(globalVariables, forms);
+    }
+
+    /**
+     * Writes bytecode in UTF-8, the stream is flushed but not closed
+     */
+    public void compile(String source, String fileName, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        compile(source, fileName, writer);
+        writer.flush();
+    }
+
+    /**
+     * @return list of top level forms
+     */
+    List parse(String source, String fileName) throws IOException {
+        SExpressionReader reader = new SExpressionReader(source);
+        reader.setSourceName(fileName);
+        return reader.readAll();
+    }
+
+    /**
+     * Compiles function or other top level form. Global variable is registered in the ParsingContext and has empty result
+     */
+    InstructionList compileTopLevelForm(Object ast, ParsingContext parsingContext) {
+        if (simplifyAst) {
+            ast = astSimplifier.simplify(ast);
         }
+        InstructionList code = new InstructionList();
+        processAst(ast, parsingContext, code);
+        return code;
+    }
 
-        if (!parsingContext.getGlobalVariables().isEmpty()) {
-            StringBuilder initBlock = new StringBuilder();
-            initBlock.append("$global-var-count ").append(parsingContext.getGlobalVariables().size()).append("\n");
-            initBlock.append("label INIT_BLOCK\n");
-            initBlock.append("enter 0 0\n");
-            for (GlobalVar globalVariable : parsingContext.getGlobalVariables()) {
-                initBlock.append(globalVariable.getByteCode());
+    /**
+     * Functions can be called before they are defined, so names are collected before code generation
+     */
+    void collectFunctionNames(List topLevelForms, ParsingContext parsingContext) {
+        for (Object ast : topLevelForms) {
+            if (ast instanceof List && ((List) ast).size() > 1 && isFunctionDefinition(((List) ast).get(0)) && ((List) ast).get(1) instanceof String) {
+                parsingContext.getFunctionNames().add((String) ((List) ast).get(1));
             }
-            initBlock.append("leave 0 0").append("\n");
-            initBlock.append("\n");
-            processedSource.insert(0, initBlock);
         }
+    }
+
+    /**
+     * @return true for [fun] and [memo-fun]
+     */
+    static boolean isFunctionDefinition(Object operator) {
+        return "fun".equals(operator) || "memo-fun".equals(operator);
+    }
 
-        return processedSource.toString();
+    private void processAst(Object ast, ParsingContext parsingContext, InstructionList code) {
+        processAst(ast, parsingContext, code, false);
     }
 
-    private String processAst(Object ast, ParsingContext parsingContext) {
+    /**
+     * @param tailPosition true if value of the expression is the result of the current function
+     */
+    private void processAst(Object ast, ParsingContext parsingContext, InstructionList code, boolean tailPosition) {
         if (ast instanceof String) {
-            return processAtom((String) ast, parsingContext);
+            processAtom((String) ast, parsingContext, code);
         } else if (ast instanceof List) {
-            return processList((List) ast, parsingContext);
+            processList((List) ast, parsingContext, code, tailPosition);
         } else {
             throw new IllegalArgumentException("Unknow object type of ast [" + ast.getClass().getSimpleName() + "]");
         }
     }
 
-    private String processAtom(String atom, ParsingContext parsingContext) {
+    private void processAtom(String atom, ParsingContext parsingContext, InstructionList code) {
         if (isLong(atom)) {
-            return "load-long " + atom + "\n";
-        } else if (isArg(atom, parsingContext)) {
-            for (int i = 0; i < parsingContext.getCurrentFunctionArgNames().size(); i++) {
-                String parameterName = parsingContext.getCurrentFunctionArgNames().get(i);
-                if (atom.equals(parameterName)) {
-                    int argumentIndex = parsingContext.getCurrentFunctionArgNames().size() - i - 1;//arguments should be in backward order
-                    //int argumentIndex=i;//arguments should be in backward order
-                    return "load-arg " + argumentIndex + "\n";
-                }
-            }
-            throw new IllegalArgumentException("Cannot find argument [" + atom + "]");
-        } else if (isLocalVar(atom, parsingContext)) {
-            for (int i = 0; i < parsingContext.getCurrentFunctionLocalVariables().size(); i++) {
-                String localVariable = parsingContext.getCurrentFunctionLocalVariables().get(i);
-                if (atom.equals(localVariable)) {
-                    return "load-local-var " + i + "\n";
-                }
-            }
-            throw new IllegalArgumentException("Cannot find argument [" + atom + "]");
-        } else if (isGlobalVar(atom, parsingContext)) {
-            return "load-global-var " + getGlobalVariableIndex(atom, parsingContext) + "\n";
-        } else {
-            throw new IllegalStateException("Unknown symbol [" + atom + "]");
+            code.add(Op.LOAD_LONG, Long.parseLong(atom));
+            return;
+        }
+
+        SymbolTable args = parsingContext.getCurrentFunctionArgs();
+        int index = args.indexOf(atom);
+        if (index != -1) {
+            int argumentIndex = args.size() - index - 1;//arguments should be in backward order
+            code.add(Op.LOAD_ARG, argumentIndex);
+            return;
+        }
+        index = parsingContext.getCurrentFunctionLocalVariables().indexOf(atom);
+        if (index != -1) {
+            code.add(Op.LOAD_LOCAL_VAR, index);
+            return;
+        }
+        index = parsingContext.getGlobalVariableNames().indexOf(atom);
+        if (index != -1) {
+            code.add(Op.LOAD_GLOBAL_VAR, index);
+            return;
         }
+        throw new IllegalStateException("Unknown symbol [" + atom + "]");
     }
 
-    private String processList(List list, ParsingContext parsingContext) {
+    private void processList(List list, ParsingContext parsingContext, InstructionList code, boolean tailPosition) {
         if (!(list.get(0) instanceof String)) {
             throw new IllegalArgumentException("Expression should start from operator atom but is started from other list. [" + astToString(list) + "]");
         }
@@ -93,285 +249,305 @@ public class FrontendCompiler {
         String operator = (String) list.get(0);
         switch (operator) {
             case "for":
-                return processForLoop(list, parsingContext);
+                processForLoop(list, parsingContext, code);
+                break;
             case "fun":
-                return processFun(list, parsingContext);
+                processFun(list, parsingContext, code, false);
+                break;
+            case "memo-fun":
+                processFun(list, parsingContext, code, true);
+                break;
             case "var":
-                return processVar(list, parsingContext);
+                processVar(list, parsingContext, code);
+                break;
             case "if":
-                return processIf(list, parsingContext);
+                processIf(list, parsingContext, code, tailPosition);
+                break;
             case "@":
             case "progn":
-                return processProgn(list, operator, parsingContext);
-            case "+":
-            case "-":
-            case "/":
-            case "*":
-            case "=":
-            case "!=":
-            case "<":
-            case ">":
-            case "and":
-            case "or":
-            case "bitand":
-            case "bitor":
-            case "bitxor":
-            case "<<":
-            case ">>":
-            case ">>>":
-                return processMathAndLogicExpression(operator, list, parsingContext);
+                processProgn(list, operator, parsingContext, code, tailPosition);
+                break;
             case "not":
-                return processNotExpression(list, parsingContext);
+                processNotExpression(list, parsingContext, code);
+                break;
             default:
-                return processFunctionCall(list, parsingContext);
+                Op op = getBinaryOperation(operator);
+                if (op != null) {
+                    processMathAndLogicExpression(op, list, parsingContext, code);
+                } else {
+                    processFunctionCall(list, parsingContext, code, tailPosition);
+                }
+                break;
         }
     }
 
-    private String processFunctionCall(List args, ParsingContext parsingContext) {
+    private void processFunctionCall(List args, ParsingContext parsingContext, InstructionList code, boolean tailPosition) {
         String functionName = (String) args.get(0);
         int argsCount = args.size() - 1;
-        StringBuilder result = new StringBuilder();
+        InstructionList inlinedFunction = parsingContext.getInlinedFunctions().get(functionName);
+        //code of the global variable initializer has no frame for local variables
+        if (inlinedFunction != null && parsingContext.getCurrentFunctionName() != null && getArgsCount(inlinedFunction) == argsCount) {
+            inlineCall(args, inlinedFunction, parsingContext, code, tailPosition);
+            return;
+        }
+
         for (int i = 1; i < args.size(); i++) {
-            result.append(processAst(args.get(i), parsingContext)).append("save\n");
+            processAst(args.get(i), parsingContext, code);
+            code.add(Op.SAVE);
         }
 
-        //result.append(processAst(functionName, parsingContext));
-        result.append("call ").append(functionName).append(" ").append(argsCount).append("\n");
-        return result.toString();
+        if (tailPosition && tailCalls && parsingContext.getCurrentFunctionName() != null && parsingContext.getFunctionNames().contains(functionName)) {
+            //current frame is reused, so the instruction should know how many arguments to drop
+            code.add(Op.TAIL_CALL, functionName, argsCount, parsingContext.getCurrentFunctionArgs().size());
+            return;
+        }
+        code.add(Op.CALL, functionName, argsCount);
+    }
+
+    /**
+     * Arguments and local variables of the inlined function become new local variables of the current function.
+     * Every call site gets its own ones, so nested inlined calls of the same function do not overwrite each other
+     */
+    private void inlineCall(List args, InstructionList function, ParsingContext parsingContext, InstructionList code, boolean tailPosition) {
+        List<Instruction> instructions = function.getInstructions();
+        int localVariablesCount = (Integer) instructions.get(1).getOperand(0);
+        int argsCount = getArgsCount(function);
+        //names with space never clash with names of the source
+        String namePrefix = parsingContext.getNextLabel("inline_" + args.get(0) + "_") + " ";
+        SymbolTable localVariables = parsingContext.getCurrentFunctionLocalVariables();
+        int[] argSlots = new int[argsCount];
+        for (int i = 0; i < argsCount; i++) {
+            processAst(args.get(i + 1), parsingContext, code);
+            argSlots[i] = localVariables.define(namePrefix + "arg" + i);
+            code.add(Op.STORE_LOCAL_VAR, argSlots[i]);
+        }
+        int[] localVariableSlots = new int[localVariablesCount];
+        for (int i = 0; i < localVariablesCount; i++) {
+            localVariableSlots[i] = localVariables.define(namePrefix + "var" + i);
+        }
+
+        Map<Label, Label> labels = new HashMap<>();
+        //body is between [enter] and [leave]
+        for (int i = 2; i < instructions.size() - 1; i++) {
+            Instruction instruction = instructions.get(i);
+            Op op = instruction.getOp();
+            switch (op) {
+                case LOAD_ARG:
+                    //arguments are indexed in backward order
+                    code.add(Op.LOAD_LOCAL_VAR, argSlots[argsCount - 1 - (Integer) instruction.getOperand(0)]);
+                    break;
+                case LOAD_LOCAL_VAR:
+                case STORE_LOCAL_VAR:
+                    code.add(op, localVariableSlots[(Integer) instruction.getOperand(0)]);
+                    break;
+                case LABEL:
+                    code.placeLabel(renameLabel((Label) instruction.getOperand(0), labels, parsingContext));
+                    break;
+                case BRANCH:
+                case BRANCH_FALSE:
+                    code.add(op, renameLabel((Label) instruction.getOperand(0), labels, parsingContext));
+                    break;
+                case TAIL_CALL:
+                    //call in tail position of the inlined function is in tail position of the current one only if the inlined call is
+                    if (tailPosition && tailCalls) {
+                        code.add(Op.TAIL_CALL, instruction.getOperand(0), instruction.getOperand(1), parsingContext.getCurrentFunctionArgs().size());
+                    } else {
+                        code.add(Op.CALL, instruction.getOperand(0), instruction.getOperand(1));
+                    }
+                    break;
+                default:
+                    Object[] operands = new Object[instruction.getOperandsCount()];
+                    for (int j = 0; j < operands.length; j++) {
+                        operands[j] = instruction.getOperand(j);
+                    }
+                    code.add(op, operands);
+                    break;
+            }
+        }
+    }
+
+    private Label renameLabel(Label label, Map<Label, Label> labels, ParsingContext parsingContext) {
+        Label result = labels.get(label);
+        if (result == null) {
+            result = parsingContext.newLabel("inline_");
+            labels.put(label, result);
+        }
+        return result;
     }
 
-    private String processIf(List args, ParsingContext parsingContext) {
+    /**
+     * @return count of arguments from [enter] of the function code
+     */
+    private int getArgsCount(InstructionList function) {
+        return (Integer) function.getInstructions().get(1).getOperand(1);
+    }
+
+    private void processIf(List args, ParsingContext parsingContext, InstructionList code, boolean tailPosition) {
         if (args.size() != 4) {
             throw new IllegalArgumentException("[IF] expression should be in following format [IF CONDITION TRUE_EXPRESSION FALSE_EXPRESSION], but found [" + astToString(args) + "]");
         }
 
-        String conditionExpressionCompiled = processAst(args.get(1), parsingContext);
-        String trueExpressionCompiled = processAst(args.get(2), parsingContext);
-        String falseExpressionCompiled = processAst(args.get(3), parsingContext);
-        String labelA = parsingContext.getNextLabel("condition_");
-        String labelB = parsingContext.getNextLabel("condition_");
-        String result = conditionExpressionCompiled + "branch-false " + labelA + "\n";
-        result += trueExpressionCompiled + "branch " + labelB + "\n" + "label " + labelA + "\n" + falseExpressionCompiled + "label " + labelB + "\n";
-        return result;
+        Label labelA = parsingContext.newLabel("condition_");
+        Label labelB = parsingContext.newLabel("condition_");
+        processAst(args.get(1), parsingContext, code);
+        code.add(Op.BRANCH_FALSE, labelA);
+        processAst(args.get(2), parsingContext, code, tailPosition);
+        code.add(Op.BRANCH, labelB);
+        code.placeLabel(labelA);
+        processAst(args.get(3), parsingContext, code, tailPosition);
+        code.placeLabel(labelB);
     }
 
-    private String processForLoop(List args, ParsingContext parsingContext) {
+    private void processForLoop(List args, ParsingContext parsingContext, InstructionList code) {
         if (args.size() < 5) {
             throw new IllegalArgumentException("[FOR] expression should be in following format [FOR INIT CONDITION INC OTHER_EXPRESSIONS...], but found [" + astToString(args) + "]");
         }
 
-        String initExpression = processAst(args.get(1), parsingContext);
-        String conditionExpression = processAst(args.get(2), parsingContext);
-        String incExpression = processAst(args.get(3), parsingContext);
-        String labelEnd = parsingContext.getNextLabel("loop_end");
-        String labelAgain = parsingContext.getNextLabel("loop_again_");
-
-        StringBuilder bodyExpression = new StringBuilder();
+        Label labelEnd = parsingContext.newLabel("loop_end");
+        Label labelAgain = parsingContext.newLabel("loop_again_");
+        processAst(args.get(1), parsingContext, code);
+        code.placeLabel(labelAgain);
+        processAst(args.get(2), parsingContext, code);
+        code.add(Op.BRANCH_FALSE, labelEnd);
         for (int i = 4; i < args.size(); i++) {
-            bodyExpression.append(processAst(args.get(i), parsingContext));
+            processAst(args.get(i), parsingContext, code);
         }
-
-        StringBuilder result = new StringBuilder();
-        result.append(initExpression);
-        result.append("label ").append(labelAgain).append("\n");
-        result.append(conditionExpression);
-//        result.append("not\n");
-        result.append("branch-false ").append(labelEnd).append("\n");
-        result.append(bodyExpression);
-        result.append(incExpression);
-        result.append("branch ").append(labelAgain).append("\n");
-        result.append("label ").append(labelEnd).append("\n");
-        return result.toString();
+        processAst(args.get(3), parsingContext, code);
+        code.add(Op.BRANCH, labelAgain);
+        code.placeLabel(labelEnd);
     }
 
-    private String processProgn(List args, String command, ParsingContext parsingContext) {
+    private void processProgn(List args, String command, ParsingContext parsingContext, InstructionList code, boolean tailPosition) {
         if (args.size() < 2) {
             throw new IllegalArgumentException("[" + command + "] expression should be in following format [" + command + " OTHER_EXPRESSIONS...], but found [" + astToString(args) + "]");
         }
-        StringBuilder sb = new StringBuilder();
         for (int i = 1; i < args.size(); i++) {
-            sb.append(processAst(args.get(i), parsingContext));
+            processAst(args.get(i), parsingContext, code, tailPosition && i == args.size() - 1);
         }
-        return sb.toString();
     }
 
-    private String processFun(List args, ParsingContext parsingContext) {
-        parsingContext.exitFromFunction();
+    /**
+     * @param memoized results of the function are cached by arguments, the function should be pure
+     */
+    private void processFun(List args, ParsingContext parsingContext, InstructionList code, boolean memoized) {
         String functionLabel = (String) args.get(1);
-        parsingContext.setCurrentFunctionName(functionLabel);
+        parsingContext.enterFunction(functionLabel);
         List paramsList = (List) args.get(2);
         for (Object param : paramsList) {
             if (!(param instanceof String)) {
                 throw new IllegalArgumentException("Parameter name of function should be string, but found [" + astToString(param) + "]");
             }
 
-            registerArgName((String) param, parsingContext);
+            if (parsingContext.getCurrentFunctionArgs().contains((String) param)) {
+                throw new IllegalArgumentException("Argument [" + param + "] already exists");
+            }
+            parsingContext.getCurrentFunctionArgs().define((String) param);
         }
 
-        StringBuilder bodyExpression = new StringBuilder();
+        if (memoized) {
+            code.add(Op.MEMOIZED, functionLabel);
+        }
+        code.placeLabel(new Label(functionLabel));
+        int argsCount = parsingContext.getCurrentFunctionArgs().size();
+        //count of local variables is known after the body
+        Instruction enter = code.add(Op.ENTER, 0, argsCount);
         for (int i = 3; i < args.size(); i++) {
-            String compiledAst = processAst(args.get(i), parsingContext);
-            bodyExpression.append(compiledAst);
+            //result of memoized function is cached at [leave], tail call would skip it
+            processAst(args.get(i), parsingContext, code, !memoized && i == args.size() - 1);
         }
 
-        String result = "label " + functionLabel + "\n";
-        result += "enter " + parsingContext.getCurrentFunctionLocalVariables().size() + " " + parsingContext.getCurrentFunctionArgNames().size() + "\n";
-        result += bodyExpression;
-        result += "leave " + parsingContext.getCurrentFunctionLocalVariables().size() + " " + parsingContext.getCurrentFunctionArgNames().size() + "\n";
-        parsingContext.setCurrentFunctionName(null);
-        return result;
+        int localVariablesCount = parsingContext.getCurrentFunctionLocalVariables().size();
+        enter.setOperand(0, localVariablesCount);
+        code.add(Op.LEAVE, localVariablesCount, argsCount);
+        parsingContext.exitFromFunction();
     }
 
-    private String processVar(List args, ParsingContext parsingContext) {
+    private void processVar(List args, ParsingContext parsingContext, InstructionList code) {
         String varName = (String) args.get(1);
         Object initExpression = args.get(2);
-        String initExpressionCompiled = processAst(initExpression, parsingContext);
-        if (parsingContext.getCurrentFunctionName() != null && isArg(varName, parsingContext)) {
+        if (parsingContext.getCurrentFunctionName() != null && parsingContext.getCurrentFunctionArgs().contains(varName)) {
             throw new IllegalArgumentException("Cannot change argument [" + varName + "] in function [" + parsingContext.getCurrentFunctionName() + "]");
         }
 
         if (parsingContext.getCurrentFunctionName() == null) {
-            //global var
-            if (getGlobalVariableIndex(varName, parsingContext) != -1) {
-                throw new IllegalArgumentException("Global variable with name [" + varName + "] already exists");
-            }
-            int globalVarIndex = parsingContext.getGlobalVariables().size();
-            String globalVarBytecode = initExpressionCompiled + "store-global-var " + globalVarIndex + "\n";
-            GlobalVar globalVariable = new GlobalVar(varName, globalVarBytecode);
-            parsingContext.getGlobalVariables().add(globalVariable);
-            return "";
+            //global var, its initialization goes to INIT_BLOCK
+            InstructionList initCode = new InstructionList();
+            processAst(initExpression, parsingContext, initCode);
+            initCode.add(Op.STORE_GLOBAL_VAR, parsingContext.getGlobalVariables().size());
+            parsingContext.addGlobalVariable(new GlobalVar(varName, initCode));
         } else {
             //local var
-            int varIndex = getLocalVarIndex(varName, parsingContext);
+            processAst(initExpression, parsingContext, code);
+            SymbolTable localVariables = parsingContext.getCurrentFunctionLocalVariables();
+            int varIndex = localVariables.indexOf(varName);
             if (varIndex == -1) {
-                parsingContext.getCurrentFunctionLocalVariables().add(varName);
-                varIndex = getLocalVarIndex(varName, parsingContext);
+                varIndex = localVariables.define(varName);
             }
-            return initExpressionCompiled + "store-local-var " + varIndex + "\n";
+            code.add(Op.STORE_LOCAL_VAR, varIndex);
         }
     }
 
-    private int getGlobalVariableIndex(String variableName, ParsingContext parsingContext) {
-        for (int i = 0; i < parsingContext.getGlobalVariables().size(); i++) {
-            if (variableName.equals(parsingContext.getGlobalVariables().get(i).getGlobalVariableName())) {
-                return i;
-            }
-        }
-        return -1;
+    private void processNotExpression(List args, ParsingContext parsingContext, InstructionList code) {
+        processAst(args.get(1), parsingContext, code);
+        code.add(Op.NOT);
     }
 
-    private String processNotExpression(List args, ParsingContext parsingContext) {
-        Object arg1 = args.get(1);
-        String compiledArg1 = processAst(arg1, parsingContext);
-        return compiledArg1 + "not\n";
+    /**
+     * Second operand is evaluated first and saved to the stack
+     */
+    private void processMathAndLogicExpression(Op op, List args, ParsingContext parsingContext, InstructionList code) {
+        processAst(args.get(2), parsingContext, code);
+        code.add(Op.SAVE);
+        processAst(args.get(1), parsingContext, code);
+        code.add(op);
     }
 
-    private String processMathAndLogicExpression(String command, List args, ParsingContext parsingContext) {
-        Object arg1 = args.get(1);
-        Object arg2 = args.get(2);
-        String compiledArg1 = processAst(arg1, parsingContext);
-        String compiledArg2 = processAst(arg2, parsingContext);
-        String result = compiledArg2 + "save\n" + compiledArg1;
-        switch (command) {
+    /**
+     * @return instruction of binary operator, or null if operator is not binary
+     */
+    private Op getBinaryOperation(String operator) {
+        switch (operator) {
             case "+":
-                result += "add";
-                break;
+                return Op.ADD;
             case "-":
-                result += "sub";
-                break;
+                return Op.SUB;
             case "*":
-                result += "mul";
-                break;
+                return Op.MUL;
             case "/":
-                result += "div";
-                break;
+                return Op.DIV;
             case "<":
-                result += "less";
-                break;
+                return Op.LESS;
             case ">":
-                result += "more";
-                break;
+                return Op.MORE;
             case "=":
-                result += "eq";
-                break;
+                return Op.EQ;
             case "!=":
-                result += "neq";
-                break;
+                return Op.NEQ;
             case "and":
-                result += "and";
-                break;
+                return Op.AND;
             case "or":
-                result += "or";
-                break;
+                return Op.OR;
             case "bitand":
-                result += "bitand";
-                break;
+                return Op.BITAND;
             case "bitor":
-                result += "bitor";
-                break;
+                return Op.BITOR;
             case "bitxor":
-                result += "bitxor";
-                break;
+                return Op.BITXOR;
             case "<<":
-                result += "lshift";
-                break;
+                return Op.LSHIFT;
             case ">>":
-                result += "rshift";
-                break;
+                return Op.RSHIFT;
             case ">>>":
-                result += "urshift";
-                break;
+                return Op.URSHIFT;
             default:
-                break;
+                return null;
         }
-        result += "\n";
-        return result;
-    }
-
-    private boolean isArg(String varName, ParsingContext parsingContext) {
-        for (String argName : parsingContext.getCurrentFunctionArgNames()) {
-            if (varName.equals(argName)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    private boolean isGlobalVar(String varName, ParsingContext parsingContext) {
-        return getGlobalVariableIndex(varName, parsingContext) != -1;
-    }
-
-    private boolean isLocalVar(String varName, ParsingContext parsingContext) {
-        for (String localVariable : parsingContext.getCurrentFunctionLocalVariables()) {
-            if (varName.equals(localVariable)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    private int getLocalVarIndex(String varName, ParsingContext parsingContext) {
-        for (int i = 0; i < parsingContext.getCurrentFunctionLocalVariables().size(); i++) {
-            String localVariable = parsingContext.getCurrentFunctionLocalVariables().get(i);
-            if (varName.equals(localVariable)) {
-                return i;
-            }
-        }
-
-        return -1;
-    }
-
-    private void registerArgName(String varName, ParsingContext parsingContext) {
-        if (isArg(varName, parsingContext)) {
-            throw new IllegalArgumentException("Argument [" + varName + "] already exists");
-        }
-
-        parsingContext.getCurrentFunctionArgNames().add(varName);
     }
 
     private boolean isLong(String value) {
+        if (!mayBeNumber(value)) {
+            return false;
+        }
         try {
             Long.parseLong(value);
             return true;
@@ -380,6 +556,21 @@ public class FrontendCompiler {
         }
     }
 
+    /**
+     * Cheap check before parsing: most atoms are names, and exception of a failed parse
+     * fills the stack trace, which is as deep as the nesting of the code
+     */
+    static boolean mayBeNumber(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        char first = value.charAt(0);
+        if (first == '-' || first == '+') {
+            return value.length() > 1 && Character.isDigit(value.charAt(1));
+        }
+        return Character.isDigit(first);
+    }
+
     private String astToString(Object ast) {
         if (ast instanceof List) {
             StringBuilder sb = new StringBuilder();
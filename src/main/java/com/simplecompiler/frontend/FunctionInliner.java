@@ -0,0 +1,127 @@
+package com.simplecompiler.frontend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects small non-recursive script functions and recompiles their callers, so the calls are replaced by the bodies.<br>
+ * Forms are compiled without inlining first, that gives the call graph. Then functions are visited callees first:
+ * function that calls an inlinable function is compiled again, after that it is inlinable itself if it is not memoized,
+ * not in a cycle of the call graph and its body, with everything inlined into it, has at most threshold instructions.
+ * Code at the call site is generated by FrontendCompiler from {@link ParsingContext#getInlinedFunctions()}.
+ *
+ * @author Dmitry
+ */
+class FunctionInliner {
+
+    private final FrontendCompiler compiler;
+    private final int threshold;
+
+    FunctionInliner(FrontendCompiler compiler, int threshold) {
+        this.compiler = compiler;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param topLevelForms ast of the top level forms
+     * @param forms compiled forms in the same order, code of functions with inlined calls is replaced
+     */
+    void inline(List topLevelForms, List<InstructionList> forms, ParsingContext parsingContext) {
+        Map<String, Integer> functionIndexes = new LinkedHashMap<>();
+        for (int i = 0; i < forms.size(); i++) {
+            String functionName = forms.get(i).getFunctionName();
+            if (functionName != null) {
+                functionIndexes.put(functionName, i);
+            }
+        }
+        Map<String, Set<String>> callees = new HashMap<>();
+        for (Map.Entry<String, Integer> function : functionIndexes.entrySet()) {
+            callees.put(function.getKey(), collectCallees(forms.get(function.getValue()), functionIndexes.keySet()));
+        }
+
+        List<String> calleesFirst = new ArrayList<>();
+        Set<String> visitedFunctions = new HashSet<>();
+        for (String functionName : functionIndexes.keySet()) {
+            visit(functionName, callees, visitedFunctions, calleesFirst);
+        }
+
+        Map<String, InstructionList> inlinedFunctions = parsingContext.getInlinedFunctions();
+        for (String functionName : calleesFirst) {
+            int index = functionIndexes.get(functionName);
+            for (String calleeName : callees.get(functionName)) {
+                if (inlinedFunctions.containsKey(calleeName)) {
+                    forms.set(index, compiler.compileTopLevelForm(topLevelForms.get(index), parsingContext));
+                    break;
+                }
+            }
+
+            InstructionList code = forms.get(index);
+            if (!code.isMemoized() && getBodySize(code) <= threshold && !isRecursive(functionName, callees)) {
+                inlinedFunctions.put(functionName, code);
+            }
+        }
+    }
+
+    private Set<String> collectCallees(InstructionList code, Set<String> functionNames) {
+        Set<String> result = new HashSet<>();
+        for (Instruction instruction : code.getInstructions()) {
+            if ((instruction.getOp() == Op.CALL || instruction.getOp() == Op.TAIL_CALL) && functionNames.contains((String) instruction.getOperand(0))) {
+                result.add((String) instruction.getOperand(0));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the function to the result after all functions it calls, functions in a cycle are added in any order
+     */
+    private void visit(String functionName, Map<String, Set<String>> callees, Set<String> visitedFunctions, List<String> result) {
+        if (!visitedFunctions.add(functionName)) {
+            return;
+        }
+        for (String calleeName : callees.get(functionName)) {
+            visit(calleeName, callees, visitedFunctions, result);
+        }
+        result.add(functionName);
+    }
+
+    private boolean isRecursive(String functionName, Map<String, Set<String>> callees) {
+        List<String> stack = new ArrayList<>(callees.get(functionName));
+        Set<String> visitedFunctions = new HashSet<>();
+        while (!stack.isEmpty()) {
+            String calleeName = stack.remove(stack.size() - 1);
+            if (calleeName.equals(functionName)) {
+                return true;
+            }
+            if (visitedFunctions.add(calleeName)) {
+                stack.addAll(callees.get(calleeName));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of instructions between [enter] and [leave], labels are not counted
+     */
+    private int getBodySize(InstructionList code) {
+        int size = 0;
+        for (Instruction instruction : code.getInstructions()) {
+            switch (instruction.getOp()) {
+                case LABEL:
+                case MEMOIZED:
+                case ENTER:
+                case LEAVE:
+                    break;
+                default:
+                    size++;
+                    break;
+            }
+        }
+        return size;
+    }
+}
@@ -6,19 +6,22 @@ package com.simplecompiler.frontend;
 public class GlobalVar {
 
     private String globalVariableName;
-    private String byteCode;
+    private InstructionList code;
 
-    public String getByteCode() {
-        return byteCode;
+    /**
+     * @return initialization of the variable, it ends with [store-global-var]
+     */
+    public InstructionList getCode() {
+        return code;
     }
 
     public String getGlobalVariableName() {
         return globalVariableName;
     }
 
-    public GlobalVar(String globalVariableName, String byteCode) {
+    public GlobalVar(String globalVariableName, InstructionList code) {
         this.globalVariableName = globalVariableName;
-        this.byteCode = byteCode;
+        this.code = code;
     }
 
 }
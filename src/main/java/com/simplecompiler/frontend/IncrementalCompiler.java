@@ -0,0 +1,238 @@
+package com.simplecompiler.frontend;
+
+import com.simplecompiler.optimizer.PeepholeOptimizer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compiler that keeps results of every top level form between compilations of the same file.<br>
+ * Source is split into top level forms by a bracket scanner, only forms with new text are parsed.
+ * Compiled form is reused while its text and everything it depends on are unchanged:
+ * indexes of referenced global variables, set of referenced script functions (they decide tail calls)
+ * and, for a global variable, its own index. Labels are scoped by the form, so they are stable while the form is unchanged.<br>
+ * Every form is compiled with clean local variables, so output can differ from FrontendCompiler in local variable indexes,
+ * but it executes the same way.
+ *
+ * @author Dmitry
+ */
+public class IncrementalCompiler {
+
+    private final FrontendCompiler compiler;
+    private final String fileName;
+    private Map<String, FormEntry> forms = new HashMap<>();
+    private String optionsDescription;
+    private int lastCompiledFormsCount;
+    private int lastReusedFormsCount;
+
+    public IncrementalCompiler(FrontendCompiler compiler, String fileName) {
+        this.compiler = compiler;
+        this.fileName = fileName;
+    }
+
+    public String compile(String source) throws IOException {
+        if (!compiler.getOptionsDescription().equals(optionsDescription)) {
+            forms.clear();
+            optionsDescription = compiler.getOptionsDescription();
+        }
+
+        List<FormEntry> entries = new ArrayList<>();
+        Map<String, FormEntry> newForms = new HashMap<>();
+        Set<String> functionNames = new TreeSet<>();
+        for (String formText : splitTopLevelForms(source)) {
+            FormEntry entry = forms.get(formText);
+            if (entry == null) {
+                entry = new FormEntry(formText, parseForm(formText));
+            }
+            if (entry.isFunction()) {
+                functionNames.add(entry.name);
+            }
+            newForms.put(formText, entry);
+            entries.add(entry);
+        }
+        forms = newForms;
+
+        lastCompiledFormsCount = 0;
+        lastReusedFormsCount = 0;
+        List<GlobalVar> globalVariables = new ArrayList<>();
+        Map<String, Integer> globalIndexes = new HashMap<>();
+        List<InstructionList> compiledForms = new ArrayList<>(entries.size());
+        int otherFormIndex = 0;
+        for (FormEntry entry : entries) {
+            String dependencies = collectDependencies(entry, globalIndexes, functionNames, globalVariables.size());
+            String labelScope = entry.isFunction() ? "f_" + entry.name : entry.isGlobalVar() ? "g_" + entry.name : "t" + otherFormIndex++;
+            if (entry.code == null || !dependencies.equals(entry.dependencies) || !labelScope.equals(entry.labelScope)) {
+                compileForm(entry, globalVariables, functionNames, labelScope);
+                entry.dependencies = dependencies;
+                entry.labelScope = labelScope;
+                lastCompiledFormsCount++;
+            } else {
+                lastReusedFormsCount++;
+            }
+
+            if (entry.globalVar != null) {
+                globalIndexes.put(entry.name, globalVariables.size());
+                globalVariables.add(entry.globalVar);
+            }
+            compiledForms.add(entry.code);
+        }
+        new PurityChecker().check(compiledForms);
+        StringBuilder result = new StringBuilder();
+        new BytecodeWriter(result).writeProgram(globalVariables, compiledForms);
+        return compiler.isOptimize() ? new PeepholeOptimizer().optimize(result.toString()).getBytecode() : result.toString();
+    }
+
+    /**
+     * @return number of top level forms compiled by the last compilation
+     */
+    public int getLastCompiledFormsCount() {
+        return lastCompiledFormsCount;
+    }
+
+    /**
+     * @return number of top level forms reused by the last compilation
+     */
+    public int getLastReusedFormsCount() {
+        return lastReusedFormsCount;
+    }
+
+    private Object parseForm(String formText) throws IOException {
+        List parsedForms = compiler.parse(formText, fileName);
+        if (parsedForms.size() != 1) {
+            throw new IllegalArgumentException("Error while parsing source file [" + fileName + "]");
+        }
+        return parsedForms.get(0);
+    }
+
+    private void compileForm(FormEntry entry, List<GlobalVar> globalVariables, Set<String> functionNames, String labelScope) {
+        ParsingContext parsingContext = new ParsingContext();
+        parsingContext.setFileName(fileName);
+        parsingContext.setSource(entry.text);
+        parsingContext.setLabelScope(labelScope);
+        for (GlobalVar globalVariable : globalVariables) {
+            parsingContext.addGlobalVariable(globalVariable);
+        }
+        parsingContext.getFunctionNames().addAll(functionNames);
+        entry.code = compiler.compileTopLevelForm(entry.ast, parsingContext);
+        entry.globalVar = null;
+        if (parsingContext.getGlobalVariables().size() > globalVariables.size()) {
+            entry.globalVar = parsingContext.getGlobalVariables().get(globalVariables.size());
+        }
+    }
+
+    private String collectDependencies(FormEntry entry, Map<String, Integer> globalIndexes, Set<String> functionNames, int globalVariablesCount) {
+        StringBuilder sb = new StringBuilder();
+        if (entry.isGlobalVar()) {
+            sb.append("own=").append(globalVariablesCount).append(";");
+        }
+        for (String atom : entry.atoms) {
+            Integer globalIndex = globalIndexes.get(atom);
+            if (globalIndex != null) {
+                sb.append(atom).append("=").append(globalIndex).append(";");
+            }
+            if (functionNames.contains(atom)) {
+                sb.append(atom).append("();");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Splits source into texts of top level lists and atoms, comments and whitespaces between them are dropped.
+     * Unbalanced brackets are left to the parser to report
+     */
+    static List<String> splitTopLevelForms(String source) {
+        List<String> result = new ArrayList<>();
+        int i = 0;
+        int length = source.length();
+        while (i < length) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == ';') {
+                i = skipComment(source, i);
+            } else {
+                int start = i;
+                if (c == '(') {
+                    int depth = 0;
+                    while (i < length) {
+                        c = source.charAt(i);
+                        if (c == ';') {
+                            i = skipComment(source, i);
+                            continue;
+                        }
+                        if (c == '(') {
+                            depth++;
+                        } else if (c == ')') {
+                            depth--;
+                        }
+                        i++;
+                        if (depth == 0) {
+                            break;
+                        }
+                    }
+                } else {
+                    while (i < length && !Character.isWhitespace(source.charAt(i)) && source.charAt(i) != '(' && source.charAt(i) != ';') {
+                        i++;
+                    }
+                }
+                result.add(source.substring(start, i));
+            }
+        }
+        return result;
+    }
+
+    private static int skipComment(String source, int index) {
+        while (index < source.length() && source.charAt(index) != '\n' && source.charAt(index) != '\r') {
+            index++;
+        }
+        return index;
+    }
+
+    private static class FormEntry {
+
+        final String text;
+        final Object ast;
+        final String name;
+        final boolean function;
+        final boolean varForm;
+        final Set<String> atoms = new TreeSet<>();
+        InstructionList code;
+        String dependencies;
+        String labelScope;
+        GlobalVar globalVar;
+
+        FormEntry(String text, Object ast) {
+            this.text = text;
+            this.ast = ast;
+            collectAtoms(ast);
+            List list = ast instanceof List ? (List) ast : null;
+            boolean named = list != null && list.size() > 1 && list.get(1) instanceof String;
+            function = named && FrontendCompiler.isFunctionDefinition(list.get(0));
+            varForm = named && "var".equals(list.get(0));
+            name = named ? (String) list.get(1) : null;
+        }
+
+        boolean isFunction() {
+            return function;
+        }
+
+        boolean isGlobalVar() {
+            return varForm;
+        }
+
+        private void collectAtoms(Object ast) {
+            if (ast instanceof String) {
+                atoms.add((String) ast);
+            } else if (ast instanceof List) {
+                for (Object child : (List) ast) {
+                    collectAtoms(child);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.simplecompiler.frontend;
+
+/**
+ * Generated instruction: opcode and operands. Operand is a Label, a function name or a number.
+ * Operands of [enter] and [leave] are set after the function body is generated, because only then the count of local variables is known.
+ *
+ * @author Dmitry
+ */
+public class Instruction {
+
+    private static final Object[] NO_OPERANDS = new Object[0];
+
+    private final Op op;
+    private final Object[] operands;
+
+    public Instruction(Op op, Object... operands) {
+        this.op = op;
+        this.operands = operands.length == 0 ? NO_OPERANDS : operands;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public int getOperandsCount() {
+        return operands.length;
+    }
+
+    public Object getOperand(int index) {
+        return operands[index];
+    }
+
+    void setOperand(int index, Object value) {
+        operands[index] = value;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(op.getCommand());
+        for (Object operand : operands) {
+            sb.append(' ').append(operand);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.simplecompiler.frontend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Code of one top level form or of the initializer of a global variable.
+ * Instructions are appended in execution order, code is never inserted in the middle.
+ *
+ * @author Dmitry
+ */
+public class InstructionList {
+
+    private final List<Instruction> instructions = new ArrayList<>();
+
+    public Instruction add(Op op, Object... operands) {
+        Instruction instruction = new Instruction(op, operands);
+        instructions.add(instruction);
+        return instruction;
+    }
+
+    public void placeLabel(Label label) {
+        add(Op.LABEL, label);
+    }
+
+    public List<Instruction> getInstructions() {
+        return Collections.unmodifiableList(instructions);
+    }
+
+    public int size() {
+        return instructions.size();
+    }
+
+    public boolean isEmpty() {
+        return instructions.isEmpty();
+    }
+
+    /**
+     * @return name of the function if this is the code of a function, otherwise null
+     */
+    public String getFunctionName() {
+        int labelIndex = isMemoized() ? 1 : 0;
+        if (labelIndex + 1 < instructions.size() && instructions.get(labelIndex).getOp() == Op.LABEL && instructions.get(labelIndex + 1).getOp() == Op.ENTER) {
+            return instructions.get(labelIndex).getOperand(0).toString();
+        }
+        return null;
+    }
+
+    /**
+     * @return true if this is the code of a memoized function
+     */
+    public boolean isMemoized() {
+        return !instructions.isEmpty() && instructions.get(0).getOp() == Op.MEMOIZED;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Instruction instruction : instructions) {
+            sb.append(instruction).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package com.simplecompiler.frontend;
+
+/**
+ * Branch target. Label is created before the code that jumps to it, and placed by an instruction with Op.LABEL
+ *
+ * @author Dmitry
+ */
+public class Label {
+
+    private final String name;
+
+    public Label(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
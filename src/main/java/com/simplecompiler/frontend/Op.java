@@ -0,0 +1,53 @@
+package com.simplecompiler.frontend;
+
+/**
+ * Instructions generated by FrontendCompiler and their names in textual bytecode
+ *
+ * @author Dmitry
+ */
+public enum Op {
+
+    LABEL("label"),
+    //directive before the label of a memoized function
+    MEMOIZED("$memoized"),
+    SAVE("save"),
+    LOAD_LONG("load-long"),
+    LOAD_ARG("load-arg"),
+    LOAD_LOCAL_VAR("load-local-var"),
+    STORE_LOCAL_VAR("store-local-var"),
+    LOAD_GLOBAL_VAR("load-global-var"),
+    STORE_GLOBAL_VAR("store-global-var"),
+    CALL("call"),
+    TAIL_CALL("tail-call"),
+    ENTER("enter"),
+    LEAVE("leave"),
+    BRANCH("branch"),
+    BRANCH_FALSE("branch-false"),
+    ADD("add"),
+    SUB("sub"),
+    MUL("mul"),
+    DIV("div"),
+    LESS("less"),
+    MORE("more"),
+    EQ("eq"),
+    NEQ("neq"),
+    NOT("not"),
+    AND("and"),
+    OR("or"),
+    BITAND("bitand"),
+    BITOR("bitor"),
+    BITXOR("bitxor"),
+    LSHIFT("lshift"),
+    RSHIFT("rshift"),
+    URSHIFT("urshift");
+
+    private final String command;
+
+    private Op(String command) {
+        this.command = command;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+}
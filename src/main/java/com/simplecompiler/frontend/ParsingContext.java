@@ -1,61 +1,124 @@
 package com.simplecompiler.frontend;
 
-import com.simplecompiler.utils.StringBuilderWithPadding;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
+ * State of compilation of one source. Names are resolved through symbol tables:
+ * global variables live for the whole source, arguments and local variables only between
+ * {@link #enterFunction(String)} and {@link #exitFromFunction()}.
+ *
  * @author Dmitry
  */
 public class ParsingContext {
 
     private String source;
     private String fileName;
-    private StringBuilderWithPadding byteCodeSource = new StringBuilderWithPadding("  ");
-    private List<String> currentFunctionArgNames = new ArrayList<>();
-    private List<String> currentFunctionLocalVariables = new ArrayList<>();
+    private final SymbolTable currentFunctionArgs = new SymbolTable();
+    private final SymbolTable currentFunctionLocalVariables = new SymbolTable();
     private Map<String, String> functions = new HashMap<String, String>();
-    private List<GlobalVar> globalVariables = new ArrayList<>();
+    private final SymbolTable globalVariableNames = new SymbolTable();
+    private final List<GlobalVar> globalVariables = new ArrayList<>();
+    private Set<String> functionNames = new HashSet<>();
+    private final Map<String, InstructionList> inlinedFunctions = new HashMap<>();
     private int currentIndexToGenerateIds;
     private String currentFunctionName;
+    private String labelScope;
 
+    /**
+     * @return global variables in order of their indexes
+     */
     public List<GlobalVar> getGlobalVariables() {
-        return globalVariables;
+        return Collections.unmodifiableList(globalVariables);
     }
 
-    public void setCurrentFunctionName(String currentFunctionName) {
-        this.currentFunctionName = currentFunctionName;
+    /**
+     * @return index of the new global variable
+     */
+    public int addGlobalVariable(GlobalVar globalVariable) {
+        String name = globalVariable.getGlobalVariableName();
+        if (globalVariableNames.contains(name)) {
+            throw new IllegalArgumentException("Global variable with name [" + name + "] already exists");
+        }
+        globalVariables.add(globalVariable);
+        return globalVariableNames.define(name);
+    }
+
+    public SymbolTable getGlobalVariableNames() {
+        return globalVariableNames;
     }
 
     public String getCurrentFunctionName() {
         return currentFunctionName;
     }
 
+    /**
+     * @return names of all script functions defined in the source
+     */
+    public Set<String> getFunctionNames() {
+        return functionNames;
+    }
+
+    /**
+     * @return code of functions that are inlined at their call sites, by function name
+     */
+    public Map<String, InstructionList> getInlinedFunctions() {
+        return inlinedFunctions;
+    }
+
     public Map<String, String> getFunctions() {
         return functions;
     }
 
     public String getNextLabel(String typePrefix) {
+        if (labelScope != null) {
+            return typePrefix + fileName.replace(".", "_") + "_" + labelScope + "_" + (currentIndexToGenerateIds++);
+        }
         return typePrefix + fileName.replace(".", "_") + "_" + (currentIndexToGenerateIds++) + "";
     }
 
-    public StringBuilderWithPadding getByteCodeSource() {
-        return byteCodeSource;
+    public Label newLabel(String typePrefix) {
+        return new Label(getNextLabel(typePrefix));
+    }
+
+    /**
+     * Labels generated after this call contain the scope and are numbered from zero,
+     * so labels of a top level form do not depend on the forms before it
+     */
+    public void setLabelScope(String labelScope) {
+        this.labelScope = labelScope;
+        this.currentIndexToGenerateIds = 0;
     }
 
-    public List<String> getCurrentFunctionArgNames() {
-        return currentFunctionArgNames;
+    public SymbolTable getCurrentFunctionArgs() {
+        return currentFunctionArgs;
     }
 
-    public List<String> getCurrentFunctionLocalVariables() {
+    public SymbolTable getCurrentFunctionLocalVariables() {
         return currentFunctionLocalVariables;
     }
 
+    /**
+     * Starts scope of the function, arguments and local variables are defined after this call
+     */
+    public void enterFunction(String functionName) {
+        if (currentFunctionName != null) {
+            throw new IllegalStateException("Function [" + functionName + "] cannot be defined inside function [" + currentFunctionName + "]");
+        }
+        currentFunctionName = functionName;
+        currentFunctionArgs.clear();
+        currentFunctionLocalVariables.clear();
+    }
+
     public void exitFromFunction() {
-        currentFunctionArgNames.clear();
-        currentFunctionArgNames.clear();
+        currentFunctionName = null;
+        currentFunctionArgs.clear();
+        currentFunctionLocalVariables.clear();
     }
 
     public String getFileName() {
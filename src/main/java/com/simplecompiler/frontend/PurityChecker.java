@@ -0,0 +1,65 @@
+package com.simplecompiler.frontend;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks that memoized functions are pure, so their results can be cached.<br>
+ * Functions cannot write global variables ([var] inside a function is local), so a function is pure
+ * if neither it nor any script function it calls calls a native function.
+ *
+ * @author Dmitry
+ */
+public class PurityChecker {
+
+    /**
+     * @param forms compiled top level forms of the whole program
+     */
+    public void check(List<InstructionList> forms) {
+        Map<String, InstructionList> functions = new HashMap<>();
+        Set<String> memoizedFunctions = new HashSet<>();
+        for (InstructionList form : forms) {
+            String functionName = form.getFunctionName();
+            if (functionName != null) {
+                functions.put(functionName, form);
+                if (form.isMemoized()) {
+                    memoizedFunctions.add(functionName);
+                }
+            }
+        }
+
+        for (String functionName : memoizedFunctions) {
+            String[] nativeCall = findNativeCall(functionName, functions, new HashSet<String>());
+            if (nativeCall != null) {
+                throw new IllegalArgumentException("Memoized function [" + functionName + "] should be pure, but native function [" + nativeCall[0] + "] is called from [" + nativeCall[1] + "]");
+            }
+        }
+    }
+
+    /**
+     * @return native function and script function that calls it, or null if there are no native calls
+     */
+    private String[] findNativeCall(String functionName, Map<String, InstructionList> functions, Set<String> visitedFunctions) {
+        if (!visitedFunctions.add(functionName)) {
+            return null;
+        }
+
+        for (Instruction instruction : functions.get(functionName).getInstructions()) {
+            if (instruction.getOp() != Op.CALL && instruction.getOp() != Op.TAIL_CALL) {
+                continue;
+            }
+            String calleeName = (String) instruction.getOperand(0);
+            if (!functions.containsKey(calleeName)) {
+                return new String[]{calleeName, functionName};
+            }
+            String[] nativeCall = findNativeCall(calleeName, functions, visitedFunctions);
+            if (nativeCall != null) {
+                return nativeCall;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,220 @@
+package com.simplecompiler.frontend;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass reader of s-expressions. Produces the AST used by FrontendCompiler:
+ * every list is ArrayList, every atom is String, hex (0x1F) and binary (0b101) numbers are converted to decimal.<br>
+ * Atoms do not need separators, as in the former PEG grammar [12abc] is number [12] followed by symbol [abc].
+ * Nested lists are kept on explicit stack, so deep nesting does not use java stack.
+ *
+ * @author Dmitry
+ */
+public class SExpressionReader {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final String SYMBOL_CHARS = "~|-+!\\$%&*./:<=>?@^_";
+
+    private final CharSequence sequence;
+    private final Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private int line = 1;
+    private int column = 1;
+    private final StringBuilder token = new StringBuilder();
+    private String sourceName;
+
+    public SExpressionReader(CharSequence sequence) {
+        this.sequence = sequence;
+        this.reader = null;
+        this.buffer = null;
+        this.limit = sequence.length();
+    }
+
+    public SExpressionReader(Reader reader) {
+        this.sequence = null;
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+    /**
+     * Name of the source file that is mentioned in messages of syntax errors
+     */
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    /**
+     * @return top level forms, at least one
+     */
+    public List<Object> readAll() throws IOException {
+        List<Object> topLevelForms = new ArrayList<>();
+        List<List<Object>> openLists = new ArrayList<>();
+        List<Object> current = topLevelForms;
+        while (true) {
+            skipWhitespacesAndComments();
+            int c = peek();
+            if (c == -1) {
+                break;
+            }
+
+            if (c == '(') {
+                consume();
+                List<Object> list = new ArrayList<>();
+                current.add(list);
+                openLists.add(current);
+                current = list;
+            } else if (c == ')') {
+                if (openLists.isEmpty()) {
+                    throw error("Unexpected [)]", line, column);
+                }
+                consume();
+                current = openLists.remove(openLists.size() - 1);
+            } else {
+                readAtom(current);
+            }
+        }
+
+        if (!openLists.isEmpty()) {
+            throw error("Missing [)]", line, column);
+        }
+        if (topLevelForms.isEmpty()) {
+            throw error("Source does not contain any expression", line, column);
+        }
+        return topLevelForms;
+    }
+
+    private void readAtom(List<Object> current) throws IOException {
+        int startLine = line;
+        int startColumn = column;
+        token.setLength(0);
+        int c = peek();
+        if (c == '0') {
+            consume();
+            int radixChar = peek();
+            if (radixChar == 'x' || radixChar == 'b') {
+                consume();
+                int radix = radixChar == 'x' ? 16 : 2;
+                if (isDigitOfRadix(peek(), radix)) {
+                    while (isDigitOfRadix(peek(), radix)) {
+                        token.append((char) consume());
+                    }
+                    try {
+                        current.add(String.valueOf(Integer.parseInt(token.toString(), radix)));
+                    } catch (NumberFormatException ex) {
+                        throw error("Number [0" + (char) radixChar + token + "] does not fit to int", startLine, startColumn);
+                    }
+                    return;
+                }
+
+                //[0] is a number and [x] or [b] starts symbol
+                current.add("0");
+                token.append((char) radixChar);
+                readSymbolTail(current);
+                return;
+            }
+
+            token.append('0');
+            readDigits(current);
+        } else if (isDigit(c)) {
+            readDigits(current);
+        } else if (c == '-') {
+            token.append((char) consume());
+            if (isDigit(peek())) {
+                readDigits(current);
+            } else {
+                readSymbolTail(current);
+            }
+        } else if (isSymbolChar(c)) {
+            readSymbolTail(current);
+        } else {
+            throw error("Unexpected character [" + (char) c + "]", startLine, startColumn);
+        }
+    }
+
+    private void readDigits(List<Object> current) throws IOException {
+        while (isDigit(peek())) {
+            token.append((char) consume());
+        }
+        current.add(token.toString());
+    }
+
+    private void readSymbolTail(List<Object> current) throws IOException {
+        while (isSymbolChar(peek())) {
+            token.append((char) consume());
+        }
+        current.add(token.toString());
+    }
+
+    private void skipWhitespacesAndComments() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                consume();
+            } else if (c == ';') {
+                while (c != -1 && c != '\n' && c != '\r') {
+                    consume();
+                    c = peek();
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            if (reader == null) {
+                return -1;
+            }
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return reader == null ? sequence.charAt(position) : buffer[position];
+    }
+
+    /**
+     * Should be called only after peek() returned a character
+     */
+    private int consume() {
+        int c = reader == null ? sequence.charAt(position) : buffer[position];
+        position++;
+        if (c == '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+        return c;
+    }
+
+    private boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean isDigitOfRadix(int c, int radix) {
+        if (radix == 2) {
+            return c == '0' || c == '1';
+        }
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private boolean isSymbolChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || (c != -1 && SYMBOL_CHARS.indexOf(c) != -1);
+    }
+
+    private SExpressionSyntaxException error(String message, int errorLine, int errorColumn) {
+        if (sourceName != null) {
+            message = "Error while parsing source file [" + sourceName + "]. " + message;
+        }
+        return new SExpressionSyntaxException(message, errorLine, errorColumn);
+    }
+}
@@ -0,0 +1,26 @@
+package com.simplecompiler.frontend;
+
+/**
+ * Syntax error of the source with position of the wrong character
+ *
+ * @author Dmitry
+ */
+public class SExpressionSyntaxException extends IllegalArgumentException {
+
+    private final int line;
+    private final int column;
+
+    public SExpressionSyntaxException(String message, int line, int column) {
+        super(message + " at line " + line + ", column " + column);
+        this.line = line;
+        this.column = column;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+}
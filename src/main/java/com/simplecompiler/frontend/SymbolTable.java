@@ -0,0 +1,61 @@
+package com.simplecompiler.frontend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Names of one scope (global variables, arguments or local variables of the current function) with hashed lookup.<br>
+ * Index of a name is the order in which it was defined.
+ *
+ * @author Dmitry
+ */
+public class SymbolTable {
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * @return index of the new name
+     * @throws IllegalArgumentException if name is already defined
+     */
+    public int define(String name) {
+        if (indexes.containsKey(name)) {
+            throw new IllegalArgumentException("Symbol [" + name + "] already exists");
+        }
+        int index = names.size();
+        indexes.put(name, index);
+        names.add(name);
+        return index;
+    }
+
+    /**
+     * @return index of the name, or -1 if name is not defined
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public boolean contains(String name) {
+        return indexes.containsKey(name);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @return names in order of definition
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public void clear() {
+        indexes.clear();
+        names.clear();
+    }
+}
@@ -0,0 +1,90 @@
+package com.simplecompiler.interpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs one CompiledProgram many times in parallel on the provided ExecutorService.<br>
+ * Every run gets its own Interpreter with its own native functions object, so runs share only the immutable program.
+ * Native functions object is the way to pass input into the run and to collect its output.
+ *
+ * @author Dmitry
+ */
+public class BatchExecutor {
+
+    private final ExecutorService executorService;
+    private int initialStackSize = ExecutionState.DEFAULT_INITIAL_STACK_SIZE;
+    private int maxStackSize = ExecutionState.DEFAULT_MAX_STACK_SIZE;
+
+    public BatchExecutor(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    public void setInitialStackSize(int initialStackSize) {
+        this.initialStackSize = initialStackSize;
+    }
+
+    public void setMaxStackSize(int maxStackSize) {
+        this.maxStackSize = maxStackSize;
+    }
+
+    /**
+     * Executes program [runsCount] times and waits for all runs
+     *
+     * @return native functions objects of all runs in the order of run index
+     */
+    public <T> List<T> execute(final CompiledProgram program, int runsCount, final NativeFunctionsFactory<T> nativeFunctionsFactory) {
+        List<Future<T>> futures = new ArrayList<>(runsCount);
+        for (int i = 0; i < runsCount; i++) {
+            final int runIndex = i;
+            futures.add(executorService.submit(new Callable<T>() {
+                @Override
+                public T call() {
+                    T nativeFunctions = nativeFunctionsFactory.create(runIndex);
+                    Interpreter interpreter = new Interpreter();
+                    interpreter.setInitialStackSize(initialStackSize);
+                    interpreter.setMaxStackSize(maxStackSize);
+                    interpreter.getNativeFunctionManager().registerFunctions(nativeFunctions);
+                    interpreter.execute(program);
+                    return nativeFunctions;
+                }
+            }));
+        }
+
+        List<T> results = new ArrayList<>(runsCount);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch execution was interrupted", ex);
+        } catch (ExecutionException ex) {
+            cancel(futures);
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException("Error while execute batch", ex.getCause());
+        }
+        return results;
+    }
+
+    private void cancel(List<? extends Future> futures) {
+        for (Future future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Creates object with native functions for a single run
+     */
+    public interface NativeFunctionsFactory<T> {
+
+        public T create(int runIndex);
+    }
+}
@@ -0,0 +1,73 @@
+package com.simplecompiler.interpreter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Loads CompiledProgram from the binary .scb format written by BinaryProgramWriter.<br>
+ * File is memory mapped, the instruction stream is moved to the int[] with a single bulk copy.
+ *
+ * @author Dmitry
+ */
+public class BinaryProgramLoader {
+
+    public CompiledProgram load(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+                FileChannel channel = randomAccessFile.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return load(buffer, file.getName());
+        }
+    }
+
+    public CompiledProgram load(ByteBuffer buffer, String fileName) {
+        try {
+            return readProgram(buffer, fileName);
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Unexpected end of compiled program [" + fileName + "]", ex);
+        }
+    }
+
+    private CompiledProgram readProgram(ByteBuffer buffer, String fileName) {
+        if (buffer.getInt() != BinaryProgramWriter.MAGIC) {
+            throw new IllegalArgumentException("File [" + fileName + "] is not a compiled program");
+        }
+
+        int version = buffer.getInt();
+        if (version != BinaryProgramWriter.VERSION) {
+            throw new IllegalArgumentException("Unsupported version [" + version + "] of compiled program [" + fileName + "]. Expected version [" + BinaryProgramWriter.VERSION + "]");
+        }
+
+        int globalVarCount = buffer.getInt();
+
+        String[] symbols = new String[buffer.getInt()];
+        for (int i = 0; i < symbols.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            symbols[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int functionsCount = buffer.getInt();
+        Map<String, Integer> functions = new LinkedHashMap<>();
+        for (int i = 0; i < functionsCount; i++) {
+            String functionName = symbols[buffer.getInt()];
+            functions.put(functionName, buffer.getInt());
+        }
+
+        String[] nativeFunctionNames = new String[buffer.getInt()];
+        for (int i = 0; i < nativeFunctionNames.length; i++) {
+            nativeFunctionNames[i] = symbols[buffer.getInt()];
+        }
+
+        int[] code = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(code);
+        return new CompiledProgram(code, functions, nativeFunctionNames, globalVarCount);
+    }
+}
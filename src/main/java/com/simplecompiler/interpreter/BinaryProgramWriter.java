@@ -0,0 +1,76 @@
+package com.simplecompiler.interpreter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes CompiledProgram to the binary .scb format.<br>
+ * All values are big endian ints, strings are stored as length followed by UTF-8 bytes.
+ * <pre>
+ * header:          magic "SCB1", version, $global-var-count
+ * symbol table:    count, strings
+ * function table:  count, (name symbol index, entry address)
+ * native table:    count, name symbol index
+ * code:            count, ints
+ * </pre>
+ *
+ * @author Dmitry
+ */
+public class BinaryProgramWriter {
+
+    public static final int MAGIC = 0x53434231;//SCB1
+    public static final int VERSION = 1;
+
+    public void write(CompiledProgram program, File file) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            write(program, outputStream);
+        }
+    }
+
+    public void write(CompiledProgram program, OutputStream outputStream) throws IOException {
+        List<String> symbols = new ArrayList<>();
+        symbols.addAll(program.getFunctions().keySet());
+        for (String nativeFunctionName : program.getNativeFunctionNames()) {
+            symbols.add(nativeFunctionName);
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(program.getGlobalVarCount());
+
+        output.writeInt(symbols.size());
+        for (String symbol : symbols) {
+            byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+
+        output.writeInt(program.getFunctions().size());
+        int symbolIndex = 0;
+        for (Map.Entry<String, Integer> function : program.getFunctions().entrySet()) {
+            output.writeInt(symbolIndex++);
+            output.writeInt(function.getValue());
+        }
+
+        output.writeInt(program.getNativeFunctionNames().length);
+        for (int i = 0; i < program.getNativeFunctionNames().length; i++) {
+            output.writeInt(symbolIndex++);
+        }
+
+        int[] code = program.getCode();
+        output.writeInt(code.length);
+        for (int instruction : code) {
+            output.writeInt(instruction);
+        }
+        output.flush();
+    }
+}
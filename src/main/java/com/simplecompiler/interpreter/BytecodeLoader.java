@@ -0,0 +1,249 @@
+package com.simplecompiler.interpreter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decodes textual bytecode produced by FrontendCompiler to the int[] instruction stream.<br>
+ * Opcodes and operands are parsed once, labels are resolved to absolute addresses.
+ * Common pairs of instructions are replaced by superinstructions, unless there is a label between them.
+ * Functions listed in [$memoized] directives get [enter-memo] and [leave-memo] instead of [enter] and [leave].
+ *
+ * @author Dmitry
+ */
+public class BytecodeLoader {
+
+    private boolean superinstructions = true;
+
+    /**
+     * Enables selection of superinstructions. Enabled by default
+     */
+    public void setSuperinstructions(boolean superinstructions) {
+        this.superinstructions = superinstructions;
+    }
+
+    public CompiledProgram load(String bytecodeString) {
+        String[] lines = bytecodeString.split("\n", -1);
+        List<String[]> entries = new ArrayList<>();
+        int globalVarCount = 0;
+        Set<String> memoizedFunctions = new HashSet<>();
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            String[] parts = line.split("\\s+");
+            if (line.startsWith("$")) {
+                if (parts[0].equals("$global-var-count")) {
+                    globalVarCount = parseInt(parts, 1, line);
+                } else if (parts[0].equals("$memoized")) {
+                    if (parts.length < 2) {
+                        throw new IllegalArgumentException("Missing function name of [" + line + "]");
+                    }
+                    memoizedFunctions.add(parts[1]);
+                }
+            } else if (parts[0].equals("label")) {
+                entries.add(new String[]{"label", line.substring("label".length()).trim()});
+            } else {
+                if (Opcodes.getOpcode(parts[0]) == -1) {
+                    throw new IllegalStateException("Unknown bytecode [" + line + "]");
+                }
+
+                entries.add(parts);
+            }
+        }
+
+        if (!memoizedFunctions.isEmpty()) {
+            markMemoizedFunctions(entries, memoizedFunctions);
+        }
+        if (superinstructions) {
+            entries = selectSuperinstructions(entries);
+        }
+
+        List<String[]> instructions = new ArrayList<>();
+        Map<String, Integer> labelIndexes = new LinkedHashMap<>();
+        int address = 0;
+        for (String[] parts : entries) {
+            if (parts[0].equals("label")) {
+                String label = parts[1];
+                if (labelIndexes.containsKey(label)) {
+                    throw new IllegalArgumentException("duplicate label [" + label + "]");
+                }
+
+                labelIndexes.put(label, address);
+            } else {
+                instructions.add(parts);
+                address += 1 + Opcodes.getOperandsCount(Opcodes.getOpcode(parts[0]));
+            }
+        }
+
+        int[] code = new int[address];
+        List<String> nativeFunctionNames = new ArrayList<>();
+        int ip = 0;
+        for (String[] parts : instructions) {
+            int opcode = Opcodes.getOpcode(parts[0]);
+            int operandsCount = Opcodes.getOperandsCount(opcode);
+            if (opcode == Opcodes.TAIL_CALL && !labelIndexes.containsKey(parts[1])) {
+                throw new IllegalArgumentException("Target of tail-call should be script function, but found [" + parts[1] + "]");
+            }
+            if (opcode == Opcodes.CALL || opcode == Opcodes.TAIL_CALL) {
+                String functionName = parts[1];
+                int argsCount = parseInt(parts, 2, functionName);
+                Integer functionAddress = labelIndexes.get(functionName);
+                if (functionAddress != null) {
+                    code[ip] = opcode;
+                    code[ip + 1] = functionAddress;
+                    if (opcode == Opcodes.TAIL_CALL) {
+                        code[ip + 3] = parseInt(parts, 3, parts[0]);
+                    }
+                } else {
+                    int nativeIndex = nativeFunctionNames.indexOf(functionName);
+                    if (nativeIndex == -1) {
+                        nativeIndex = nativeFunctionNames.size();
+                        nativeFunctionNames.add(functionName);
+                    }
+                    code[ip] = Opcodes.CALL_NATIVE;
+                    code[ip + 1] = nativeIndex;
+                }
+                code[ip + 2] = argsCount;
+            } else {
+                code[ip] = opcode;
+                int branchOperandIndex = Opcodes.getBranchOperandIndex(opcode);
+                for (int i = 0; i < operandsCount; i++) {
+                    if (i == branchOperandIndex) {
+                        if (i + 1 >= parts.length) {
+                            throw new IllegalArgumentException("Missing label of [" + parts[0] + "]");
+                        }
+                        String label = parts[i + 1];
+                        Integer labelAddress = labelIndexes.get(label);
+                        if (labelAddress == null) {
+                            throw new IllegalArgumentException("Cannot find label [" + label + "]");
+                        }
+                        code[ip + 1 + i] = labelAddress;
+                    } else {
+                        code[ip + 1 + i] = parseInt(parts, i + 1, parts[0]);
+                    }
+                }
+            }
+            ip += 1 + operandsCount;
+        }
+
+        Map<String, Integer> functions = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> label : labelIndexes.entrySet()) {
+            int labelAddress = label.getValue();
+            if (labelAddress < code.length && Opcodes.isEnter(code[labelAddress])) {
+                functions.put(label.getKey(), labelAddress);
+            }
+        }
+
+        return new CompiledProgram(code, functions, nativeFunctionNames.toArray(new String[nativeFunctionNames.size()]), globalVarCount);
+    }
+
+    /**
+     * Replaces [enter] and [leave] of memoized functions, memo indexes are given in order of functions in the code
+     */
+    private void markMemoizedFunctions(List<String[]> entries, Set<String> memoizedFunctions) {
+        Set<String> foundFunctions = new HashSet<>();
+        boolean memoizedLabel = false;
+        int memoIndex = -1;
+        int memoFunctionsCount = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            String[] parts = entries.get(i);
+            if (parts[0].equals("label")) {
+                if (memoizedFunctions.contains(parts[1])) {
+                    memoizedLabel = true;
+                    foundFunctions.add(parts[1]);
+                }
+                continue;
+            }
+
+            if (parts[0].equals("enter")) {
+                memoIndex = memoizedLabel ? memoFunctionsCount++ : -1;
+            }
+            if (memoIndex != -1 && (parts[0].equals("enter") || parts[0].equals("leave"))) {
+                parseInt(parts, 2, parts[0]);
+                entries.set(i, new String[]{parts[0] + "-memo", parts[1], parts[2], String.valueOf(memoIndex)});
+            }
+            memoizedLabel = false;
+        }
+
+        for (String function : memoizedFunctions) {
+            if (!foundFunctions.contains(function)) {
+                throw new IllegalArgumentException("Cannot find memoized function [" + function + "]");
+            }
+        }
+    }
+
+    /**
+     * Replaces pairs of adjacent instructions by superinstructions. Labels are entries too,
+     * so instructions separated by a label (branch target) are never fused.
+     */
+    private List<String[]> selectSuperinstructions(List<String[]> entries) {
+        List<String[]> result = new ArrayList<>(entries.size());
+        int i = 0;
+        while (i < entries.size()) {
+            String[] current = entries.get(i);
+            String[] next = i + 1 < entries.size() ? entries.get(i + 1) : null;
+            String[] fused = next == null ? null : fuse(current, next);
+            if (fused != null) {
+                result.add(fused);
+                i += 2;
+            } else {
+                result.add(current);
+                i++;
+            }
+        }
+        return result;
+    }
+
+    private String[] fuse(String[] current, String[] next) {
+        String command = current[0];
+        String nextCommand = next[0];
+        if (nextCommand.equals("save")) {
+            switch (command) {
+                case "load-long":
+                case "load-arg":
+                case "load-local-var":
+                case "load-global-var":
+                    return new String[]{"push" + command.substring("load".length()), current[1]};
+                default:
+                    return null;
+            }
+        }
+
+        if (command.equals("load-arg") && (nextCommand.equals("add-long") || nextCommand.equals("sub-long"))) {
+            return new String[]{"load-arg-" + nextCommand, current[1], next[1]};
+        }
+
+        if (nextCommand.equals("branch-false")) {
+            switch (command) {
+                case "less":
+                case "more":
+                case "eq":
+                case "neq":
+                    return new String[]{command + "-branch-false", next[1]};
+                case "less-long":
+                case "more-long":
+                case "eq-long":
+                case "neq-long":
+                    return new String[]{command + "-branch-false", current[1], next[1]};
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    private int parseInt(String[] parts, int index, String command) {
+        if (index >= parts.length) {
+            throw new IllegalArgumentException("Missing argument [" + index + "] of [" + command + "]");
+        }
+
+        return Integer.parseInt(parts[index]);
+    }
+}
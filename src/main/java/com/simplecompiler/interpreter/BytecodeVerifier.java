@@ -0,0 +1,275 @@
+package com.simplecompiler.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks CompiledProgram before execution, so the interpreter can trust the code.<br>
+ * Every function is the code from its [enter] to the next function entry. Checks:
+ * instructions and their operands fit the code, branch targets are instructions of the same function,
+ * indexes of local variables, arguments, globals and native functions are in range, calls of script functions
+ * point to function entries with the same number of arguments, [leave] repeats counts of [enter].<br>
+ * Depth of the operand stack is tracked along all paths: it should be the same wherever paths join,
+ * zero at [leave] and equal to the arguments at [tail-call], that is not allowed in memoized functions, so every push is popped and no path falls out of its function.
+ * Maximum depth gives the exact frame size, the interpreter checks the stack once per call with it.
+ *
+ * @author Dmitry
+ */
+public class BytecodeVerifier {
+
+    /**
+     * @return maximum depth of the operand stack, indexed by address of [enter] of every function.
+     * Return address pushed by [call] is counted as a part of the caller's operand stack
+     * @throws IllegalArgumentException if program is not valid
+     */
+    public int[] verify(CompiledProgram program) {
+        int[] code = program.getCode();
+        boolean[] instructionStarts = new boolean[code.length];
+        for (int ip = 0; ip < code.length; ip += 1 + Opcodes.getOperandsCount(code[ip])) {
+            if (!Opcodes.isValid(code[ip])) {
+                throw new IllegalArgumentException("Verification failed at [" + ip + "]: unknown opcode [" + code[ip] + "]");
+            }
+            if (ip + Opcodes.getOperandsCount(code[ip]) >= code.length) {
+                throw new IllegalArgumentException("Verification failed at [" + ip + "]: operands of [" + Opcodes.getName(code[ip]) + "] are out of code");
+            }
+            instructionStarts[ip] = true;
+        }
+
+        boolean[] functionEntries = new boolean[code.length];
+        for (int address : program.getFunctions().values()) {
+            functionEntries[address] = true;
+        }
+        if (code.length > 0 && !functionEntries[0]) {
+            throw new IllegalArgumentException("Verification failed at [0]: code does not start with a function");
+        }
+
+        int[] maxDepths = new int[code.length];
+        int start = 0;
+        for (int ip = 1; ip <= code.length; ip++) {
+            if (ip == code.length || functionEntries[ip]) {
+                maxDepths[start] = new FunctionVerifier(program, instructionStarts, functionEntries, findFunctionName(program, start), start, ip).verify();
+                start = ip;
+            }
+        }
+        return maxDepths;
+    }
+
+    private static String findFunctionName(CompiledProgram program, int address) {
+        for (Map.Entry<String, Integer> function : program.getFunctions().entrySet()) {
+            if (function.getValue() == address) {
+                return function.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Data flow over the instructions of one function
+     */
+    private static class FunctionVerifier {
+
+        private final CompiledProgram program;
+        private final int[] code;
+        private final boolean[] instructionStarts;
+        private final boolean[] functionEntries;
+        private final String name;
+        private final int start;
+        private final int end;
+        private final int[] depths;
+        private final List<Integer> worklist = new ArrayList<>();
+
+        FunctionVerifier(CompiledProgram program, boolean[] instructionStarts, boolean[] functionEntries, String name, int start, int end) {
+            this.program = program;
+            this.code = program.getCode();
+            this.instructionStarts = instructionStarts;
+            this.functionEntries = functionEntries;
+            this.name = name;
+            this.start = start;
+            this.end = end;
+            this.depths = new int[end - start];
+            Arrays.fill(depths, -1);
+        }
+
+        /**
+         * @return maximum depth of the operand stack
+         */
+        int verify() {
+            if (!Opcodes.isEnter(code[start])) {
+                throw error(start, "function does not start with [enter]");
+            }
+            int localsCount = code[start + 1];
+            int argsCount = code[start + 2];
+            if (localsCount < 0 || argsCount < 0) {
+                throw error(start, "negative count of local variables or arguments");
+            }
+
+            int maxDepth = 0;
+            depths[0] = 0;
+            worklist.add(start);
+            while (!worklist.isEmpty()) {
+                int ip = worklist.remove(worklist.size() - 1);
+                int opcode = code[ip];
+                int depth = depths[ip - start];
+                int next = ip + 1 + Opcodes.getOperandsCount(opcode);
+                boolean fallsThrough = true;
+                switch (opcode) {
+                    case Opcodes.ENTER:
+                    case Opcodes.ENTER_MEMO:
+                        if (ip != start) {
+                            throw error(ip, "function entry inside function");
+                        }
+                        break;
+                    case Opcodes.LEAVE:
+                    case Opcodes.LEAVE_MEMO:
+                        if (opcode != (code[start] == Opcodes.ENTER ? Opcodes.LEAVE : Opcodes.LEAVE_MEMO)
+                                || code[ip + 1] != localsCount || code[ip + 2] != argsCount
+                                || (opcode == Opcodes.LEAVE_MEMO && code[ip + 3] != code[start + 3])) {
+                            throw error(ip, "[" + Opcodes.getName(opcode) + "] does not match [" + Opcodes.getName(code[start]) + "] of the function");
+                        }
+                        if (depth != 0) {
+                            throw error(ip, "[" + depth + "] values are left on the stack");
+                        }
+                        fallsThrough = false;
+                        break;
+                    case Opcodes.SAVE:
+                    case Opcodes.PUSH_LONG:
+                        depth++;
+                        break;
+                    case Opcodes.PUSH_ARG:
+                        checkIndex(ip, code[ip + 1], argsCount, "argument");
+                        depth++;
+                        break;
+                    case Opcodes.PUSH_LOCAL_VAR:
+                        checkIndex(ip, code[ip + 1], localsCount, "local variable");
+                        depth++;
+                        break;
+                    case Opcodes.PUSH_GLOBAL_VAR:
+                        checkIndex(ip, code[ip + 1], program.getGlobalVarCount(), "global variable");
+                        depth++;
+                        break;
+                    case Opcodes.LOAD_ARG:
+                    case Opcodes.LOAD_ARG_ADD_LONG:
+                    case Opcodes.LOAD_ARG_SUB_LONG:
+                        checkIndex(ip, code[ip + 1], argsCount, "argument");
+                        break;
+                    case Opcodes.LOAD_LOCAL_VAR:
+                    case Opcodes.STORE_LOCAL_VAR:
+                        checkIndex(ip, code[ip + 1], localsCount, "local variable");
+                        break;
+                    case Opcodes.LOAD_GLOBAL_VAR:
+                    case Opcodes.STORE_GLOBAL_VAR:
+                        checkIndex(ip, code[ip + 1], program.getGlobalVarCount(), "global variable");
+                        break;
+                    case Opcodes.ADD:
+                    case Opcodes.SUB:
+                    case Opcodes.MUL:
+                    case Opcodes.DIV:
+                    case Opcodes.LESS:
+                    case Opcodes.MORE:
+                    case Opcodes.EQ:
+                    case Opcodes.NEQ:
+                    case Opcodes.AND:
+                    case Opcodes.OR:
+                    case Opcodes.BITAND:
+                    case Opcodes.BITOR:
+                    case Opcodes.BITXOR:
+                    case Opcodes.LSHIFT:
+                    case Opcodes.RSHIFT:
+                    case Opcodes.URSHIFT:
+                    case Opcodes.LESS_BRANCH_FALSE:
+                    case Opcodes.MORE_BRANCH_FALSE:
+                    case Opcodes.EQ_BRANCH_FALSE:
+                    case Opcodes.NEQ_BRANCH_FALSE:
+                        depth = pop(ip, depth, 1);
+                        break;
+                    case Opcodes.CALL:
+                        checkScriptCall(ip);
+                        //return address
+                        maxDepth = Math.max(maxDepth, depth + 1);
+                        depth = pop(ip, depth, code[ip + 2]);
+                        break;
+                    case Opcodes.CALL_NATIVE:
+                        checkIndex(ip, code[ip + 1], program.getNativeFunctionNames().length, "native function");
+                        depth = pop(ip, depth, code[ip + 2]);
+                        break;
+                    case Opcodes.TAIL_CALL:
+                        checkScriptCall(ip);
+                        if (code[start] == Opcodes.ENTER_MEMO) {
+                            throw error(ip, "[tail-call] in memoized function skips caching of the result");
+                        }
+                        if (code[ip + 3] != argsCount) {
+                            throw error(ip, "[tail-call] replaces [" + code[ip + 3] + "] arguments, but function has [" + argsCount + "]");
+                        }
+                        if (depth != code[ip + 2]) {
+                            throw error(ip, "[tail-call] with [" + code[ip + 2] + "] arguments, but stack has [" + depth + "] values");
+                        }
+                        fallsThrough = false;
+                        break;
+                    case Opcodes.BRANCH:
+                        fallsThrough = false;
+                        break;
+                    default:
+                        break;
+                }
+                maxDepth = Math.max(maxDepth, depth);
+
+                int branchOperandIndex = Opcodes.getBranchOperandIndex(opcode);
+                if (branchOperandIndex != -1) {
+                    int target = code[ip + 1 + branchOperandIndex];
+                    if (target < start || target >= end || !instructionStarts[target]) {
+                        throw error(ip, "branch target [" + target + "] is not an instruction of the function");
+                    }
+                    flowTo(ip, target, depth);
+                }
+                if (fallsThrough) {
+                    if (next >= end) {
+                        throw error(ip, "execution falls through the end of the function");
+                    }
+                    flowTo(ip, next, depth);
+                }
+            }
+            return maxDepth;
+        }
+
+        private void flowTo(int ip, int target, int depth) {
+            int knownDepth = depths[target - start];
+            if (knownDepth == -1) {
+                depths[target - start] = depth;
+                worklist.add(target);
+            } else if (knownDepth != depth) {
+                throw error(ip, "stack depth at [" + target + "] is [" + knownDepth + "] on one path and [" + depth + "] on another");
+            }
+        }
+
+        private int pop(int ip, int depth, int count) {
+            if (count < 0 || depth < count) {
+                throw error(ip, "[" + Opcodes.getName(code[ip]) + "] pops [" + count + "] values, but stack has [" + depth + "]");
+            }
+            return depth - count;
+        }
+
+        private void checkIndex(int ip, int index, int count, String kind) {
+            if (index < 0 || index >= count) {
+                throw error(ip, kind + " index [" + index + "] is out of range [0, " + count + ")");
+            }
+        }
+
+        private void checkScriptCall(int ip) {
+            int address = code[ip + 1];
+            if (address < 0 || address >= code.length || !functionEntries[address] || !Opcodes.isEnter(code[address])) {
+                throw error(ip, "call target [" + address + "] is not a function entry");
+            }
+            if (code[address + 2] != code[ip + 2]) {
+                //same message as for native functions in ProgramLinker
+                throw new IllegalArgumentException("Function [" + findFunctionName(program, address) + "] expects [" + code[address + 2]
+                        + "] arguments, but called with [" + code[ip + 2] + "] in function [" + name + "]");
+            }
+        }
+
+        private IllegalArgumentException error(int ip, String message) {
+            return new IllegalArgumentException("Verification failed in function [" + name + "] at [" + ip + "]: " + message);
+        }
+    }
+}
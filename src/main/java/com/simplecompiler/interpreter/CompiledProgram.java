@@ -0,0 +1,109 @@
+package com.simplecompiler.interpreter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bytecode decoded to the int[] instruction stream.<br>
+ * Only function labels (labels followed by enter) survive decoding, all branch labels are already resolved to addresses.<br>
+ * Program is immutable, so one instance can be executed by many threads at the same time, every execution has its own ExecutionState.
+ * Frame sizes and memoized functions are computed once, on the first request, and shared by all executions.
+ * Arrays returned by getters are shared and must not be modified.
+ *
+ * @author Dmitry
+ */
+public class CompiledProgram {
+
+    private final int[] code;
+    private final Map<String, Integer> functions;
+    private final String[] nativeFunctionNames;
+    private final int globalVarCount;
+    private volatile int[] frameSizes;
+    private volatile int[] memoFunctionAddresses;
+
+    public CompiledProgram(int[] code, Map<String, Integer> functions, String[] nativeFunctionNames, int globalVarCount) {
+        this.code = code;
+        this.functions = Collections.unmodifiableMap(new LinkedHashMap<>(functions));
+        this.nativeFunctionNames = nativeFunctionNames.clone();
+        this.globalVarCount = globalVarCount;
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public Map<String, Integer> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * @return entry address of the function, or -1 if there is no such function
+     */
+    public int getFunctionAddress(String functionName) {
+        Integer address = functions.get(functionName);
+        return address == null ? -1 : address;
+    }
+
+    public String[] getNativeFunctionNames() {
+        return nativeFunctionNames;
+    }
+
+    public int getGlobalVarCount() {
+        return globalVarCount;
+    }
+
+    /**
+     * Program is checked by BytecodeVerifier on the first call only, every later execution of the program reuses the result.
+     * Frame size of a function is saved frame index, local variables and the maximum depth of its operand stack,
+     * so the interpreter checks the stack once on function entry instead of on every push.
+     *
+     * @return array indexed by address of [enter] instruction
+     * @throws IllegalArgumentException if program is not valid
+     */
+    public int[] getFrameSizes() {
+        int[] result = frameSizes;
+        if (result == null) {
+            result = new BytecodeVerifier().verify(this);
+            for (int ip = 0; ip < code.length; ip += 1 + Opcodes.getOperandsCount(code[ip])) {
+                if (Opcodes.isEnter(code[ip])) {
+                    result[ip] += 1 + code[ip + 1];
+                }
+            }
+            //computation gives the same result in every thread, so a race only repeats it
+            frameSizes = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return addresses of [enter-memo] indexed by memo index of the function
+     * @throws IllegalArgumentException if memo indexes are not sequential
+     */
+    public int[] getMemoFunctionAddresses() {
+        int[] result = memoFunctionAddresses;
+        if (result == null) {
+            List<Integer> addresses = new ArrayList<>();
+            for (int ip = 0; ip < code.length; ip += 1 + Opcodes.getOperandsCount(code[ip])) {
+                if (code[ip] == Opcodes.ENTER_MEMO) {
+                    int memoIndex = code[ip + 3];
+                    while (addresses.size() <= memoIndex) {
+                        addresses.add(null);
+                    }
+                    addresses.set(memoIndex, ip);
+                }
+            }
+            if (addresses.contains(null)) {
+                throw new IllegalArgumentException("Memo indexes of functions should be sequential");
+            }
+            result = new int[addresses.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = addresses.get(i);
+            }
+            memoFunctionAddresses = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,30 @@
+package com.simplecompiler.interpreter;
+
+import java.io.PrintStream;
+
+/**
+ * Native [print] that writes arguments separated by space to a PrintStream.<br>
+ * Every call boxes its arguments and writes a line, PrintFunctions is the buffered alternative for print heavy scripts
+ *
+ * @author Dmitry
+ */
+public class ConsoleFunctions {
+
+    private final PrintStream out;
+
+    public ConsoleFunctions(PrintStream out) {
+        this.out = out;
+    }
+
+    @NativeFunction(name = "print")
+    public void print(Object[] args) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                sb.append(" ");
+            }
+            sb.append(args[i]);
+        }
+        out.println(sb);
+    }
+}
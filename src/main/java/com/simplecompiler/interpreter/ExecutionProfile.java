@@ -0,0 +1,301 @@
+package com.simplecompiler.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counters collected by Interpreter.profile for one execution.<br>
+ * The interpreter counts executions of every address and reports function entries and exits,
+ * everything else (per opcode and exclusive counts) is derived from these counters after execution.
+ * Instruction count is the measure of time, except native calls that are measured in nanoseconds.
+ *
+ * @author Dmitry
+ */
+public class ExecutionProfile {
+
+    private final CompiledProgram program;
+    private final String[] functionNames;
+    private final int[] functionIndexByAddress;
+    private final long[] addressCounts;
+    private long executedCount;
+    private final long[] callCounts;
+    private final long[] inclusiveCounts;
+    private final int[] activeCalls;
+    private final long[] nativeCallCounts;
+    private final long[] nativeCallNanos;
+    private final List<Long> callStartCounts = new ArrayList<>();
+    private final List<Integer> callStack = new ArrayList<>();
+    private final StackNode root = new StackNode(-1, null);
+    private StackNode currentNode = root;
+    private long lastTransitionCount;
+    private int maxCallDepth;
+    private int maxStackSize;
+
+    ExecutionProfile(CompiledProgram program) {
+        this.program = program;
+        int[] code = program.getCode();
+        functionIndexByAddress = new int[code.length];
+        Arrays.fill(functionIndexByAddress, -1);
+        functionNames = program.getFunctions().keySet().toArray(new String[0]);
+        for (int i = 0; i < functionNames.length; i++) {
+            functionIndexByAddress[program.getFunctionAddress(functionNames[i])] = i;
+        }
+        addressCounts = new long[code.length];
+        callCounts = new long[functionNames.length];
+        inclusiveCounts = new long[functionNames.length];
+        activeCalls = new int[functionNames.length];
+        nativeCallCounts = new long[program.getNativeFunctionNames().length];
+        nativeCallNanos = new long[program.getNativeFunctionNames().length];
+    }
+
+    /**
+     * Called before execution of every instruction
+     */
+    void count(int ip) {
+        addressCounts[ip]++;
+        executedCount++;
+    }
+
+    /**
+     * Called on entry of the function at the address, after its frame is allocated
+     */
+    void enterFunction(int address, int stackSize) {
+        int function = functionIndexByAddress[address];
+        //enter instruction is already counted, it belongs to the called function
+        long executed = executedCount - 1;
+        currentNode.selfCount += executed - lastTransitionCount;
+        lastTransitionCount = executed;
+        currentNode = currentNode.getChild(function);
+
+        callCounts[function]++;
+        activeCalls[function]++;
+        callStack.add(function);
+        callStartCounts.add(executed);
+        maxCallDepth = Math.max(maxCallDepth, callStack.size());
+        maxStackSize = Math.max(maxStackSize, stackSize);
+    }
+
+    /**
+     * Called when the current function returns or is replaced by tail call
+     */
+    void exitFunction() {
+        long executed = executedCount;
+        currentNode.selfCount += executed - lastTransitionCount;
+        lastTransitionCount = executed;
+        currentNode = currentNode.parent;
+
+        int last = callStack.size() - 1;
+        int function = callStack.remove(last);
+        long startCount = callStartCounts.remove(last);
+        //recursive calls are already included in the outermost one
+        if (--activeCalls[function] == 0) {
+            inclusiveCounts[function] += executed - startCount;
+        }
+    }
+
+    void nativeCall(int nativeIndex, long nanos) {
+        nativeCallCounts[nativeIndex]++;
+        nativeCallNanos[nativeIndex] += nanos;
+    }
+
+    /**
+     * @return total number of executed instructions, superinstruction is one instruction
+     */
+    public long getExecutedInstructionsCount() {
+        return executedCount;
+    }
+
+    /**
+     * @return executed count by opcode name, sorted by count
+     */
+    public Map<String, Long> getOpcodeCounts() {
+        int[] code = program.getCode();
+        Map<String, Long> counts = new HashMap<>();
+        for (int ip = 0; ip < code.length; ip += 1 + Opcodes.getOperandsCount(code[ip])) {
+            if (addressCounts[ip] > 0) {
+                String name = Opcodes.getName(code[ip]);
+                Long count = counts.get(name);
+                counts.put(name, (count == null ? 0 : count) + addressCounts[ip]);
+            }
+        }
+        return sortByValue(counts);
+    }
+
+    /**
+     * @return count of calls by function name, sorted by count
+     */
+    public Map<String, Long> getCallCounts() {
+        return byFunctionName(callCounts);
+    }
+
+    /**
+     * @return instructions executed by the function and everything it called, sorted by count
+     */
+    public Map<String, Long> getInclusiveCounts() {
+        return byFunctionName(inclusiveCounts);
+    }
+
+    /**
+     * @return instructions executed by the function itself, sorted by count
+     */
+    public Map<String, Long> getExclusiveCounts() {
+        int[] code = program.getCode();
+        long[] counts = new long[functionNames.length];
+        int function = -1;
+        for (int ip = 0; ip < code.length; ip += 1 + Opcodes.getOperandsCount(code[ip])) {
+            if (functionIndexByAddress[ip] != -1) {
+                function = functionIndexByAddress[ip];
+            }
+            if (function != -1) {
+                counts[function] += addressCounts[ip];
+            }
+        }
+        return byFunctionName(counts);
+    }
+
+    /**
+     * @return count of calls by native function name
+     */
+    public Map<String, Long> getNativeCallCounts() {
+        return byNativeFunctionName(nativeCallCounts);
+    }
+
+    /**
+     * @return total time of calls in nanoseconds by native function name
+     */
+    public Map<String, Long> getNativeCallNanos() {
+        return byNativeFunctionName(nativeCallNanos);
+    }
+
+    public int getMaxCallDepth() {
+        return maxCallDepth;
+    }
+
+    /**
+     * @return maximum number of ints used on the stack, including global variables
+     */
+    public int getMaxStackSize() {
+        return maxStackSize;
+    }
+
+    /**
+     * Collapsed stacks, one line per distinct call stack: function names separated by [;] and instructions executed by the last function.
+     * This is the input format of flamegraph.pl and compatible tools
+     */
+    public String toCollapsedStacks() {
+        StringBuilder sb = new StringBuilder();
+        //depth first without recursion, call stacks of scripts can be much deeper than the java stack
+        List<StackNode> nodes = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        nodes.add(root);
+        paths.add("");
+        while (!nodes.isEmpty()) {
+            StackNode node = nodes.remove(nodes.size() - 1);
+            String path = paths.remove(paths.size() - 1);
+            if (node != root && node.selfCount > 0) {
+                sb.append(path).append(" ").append(node.selfCount).append("\n");
+            }
+            List<StackNode> children = new ArrayList<>(node.children.values());
+            for (int i = children.size() - 1; i >= 0; i--) {
+                String name = functionNames[children.get(i).function];
+                nodes.add(children.get(i));
+                paths.add(path.isEmpty() ? name : path + ";" + name);
+            }
+        }
+        return sb.toString();
+    }
+
+    public String toReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("executed instructions: ").append(getExecutedInstructionsCount()).append("\n");
+        sb.append("max call depth: ").append(maxCallDepth).append("\n");
+        sb.append("max stack size: ").append(maxStackSize).append("\n");
+        Map<String, Long> inclusiveCounts = getInclusiveCounts();
+        Map<String, Long> exclusiveCounts = getExclusiveCounts();
+        Map<String, Long> callCounts = getCallCounts();
+        sb.append("\nfunction calls inclusive exclusive\n");
+        for (String function : exclusiveCounts.keySet()) {
+            sb.append(function).append(" ").append(callCounts.get(function)).append(" ").append(inclusiveCounts.get(function)).append(" ").append(exclusiveCounts.get(function)).append("\n");
+        }
+        Map<String, Long> nativeCallNanos = getNativeCallNanos();
+        if (!nativeCallNanos.isEmpty()) {
+            sb.append("\nnative calls nanos\n");
+            for (Map.Entry<String, Long> entry : getNativeCallCounts().entrySet()) {
+                sb.append(entry.getKey()).append(" ").append(entry.getValue()).append(" ").append(nativeCallNanos.get(entry.getKey())).append("\n");
+            }
+        }
+        sb.append("\nopcode count\n");
+        for (Map.Entry<String, Long> entry : getOpcodeCounts().entrySet()) {
+            sb.append(entry.getKey()).append(" ").append(entry.getValue()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private Map<String, Long> byFunctionName(long[] counts) {
+        Map<String, Long> result = new HashMap<>();
+        for (int i = 0; i < functionNames.length; i++) {
+            if (callCounts[i] > 0) {
+                result.put(functionNames[i], counts[i]);
+            }
+        }
+        return sortByValue(result);
+    }
+
+    private Map<String, Long> byNativeFunctionName(long[] counts) {
+        Map<String, Long> result = new HashMap<>();
+        String[] nativeFunctionNames = program.getNativeFunctionNames();
+        for (int i = 0; i < nativeFunctionNames.length; i++) {
+            if (nativeCallCounts[i] > 0) {
+                result.put(nativeFunctionNames[i], counts[i]);
+            }
+        }
+        return sortByValue(result);
+    }
+
+    private static Map<String, Long> sortByValue(Map<String, Long> map) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(map.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+                int result = Long.compare(o2.getValue(), o1.getValue());
+                return result != 0 ? result : o1.getKey().compareTo(o2.getKey());
+            }
+        });
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Node of the tree of call stacks
+     */
+    private static class StackNode {
+
+        final int function;
+        final StackNode parent;
+        final Map<Integer, StackNode> children = new LinkedHashMap<>();
+        long selfCount;
+
+        StackNode(int function, StackNode parent) {
+            this.function = function;
+            this.parent = parent;
+        }
+
+        StackNode getChild(int function) {
+            StackNode child = children.get(function);
+            if (child == null) {
+                child = new StackNode(function, this);
+                children.put(function, child);
+            }
+            return child;
+        }
+    }
+}
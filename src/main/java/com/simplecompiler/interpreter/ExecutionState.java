@@ -1,20 +1,69 @@
 package com.simplecompiler.interpreter;
 
+import java.util.Arrays;
+
 /**
+ * Registers and stack of one execution.<br>
+ * Stack starts small and grows on demand up to the maximum size, so short scripts do not pay for deep recursion.
+ *
  * @author Dmitry
  */
 public class ExecutionState {
 
+    public static final int DEFAULT_INITIAL_STACK_SIZE = 256;
+    public static final int DEFAULT_MAX_STACK_SIZE = 1 << 20;
+
     public int accumulator;
-    public int[] stack = new int[10000];
+    public int[] stack;
     public int stackIndex = -1;
     public int ip = 0;
     public int frameIndex = -1;
+    public MemoCache[] memoCaches = new MemoCache[0];
+    public ExecutionProfile profile;
+    /**
+     * Decremented on every function entry and every branch, so loops and recursion cannot run without checks.
+     * When it runs out, preemptible execution is suspended with all registers saved here, otherwise budget is refilled
+     */
+    public int budget = Integer.MAX_VALUE;
+    public boolean preemptible;
+    private final int maxStackSize;
 
     public ExecutionState() {
+        this(DEFAULT_INITIAL_STACK_SIZE, DEFAULT_MAX_STACK_SIZE);
+    }
+
+    public ExecutionState(int initialStackSize, int maxStackSize) {
+        if (initialStackSize <= 0 || maxStackSize < initialStackSize) {
+            throw new IllegalArgumentException("Wrong stack size, initial [" + initialStackSize + "] maximum [" + maxStackSize + "]");
+        }
+        this.stack = new int[initialStackSize];
+        this.maxStackSize = maxStackSize;
+    }
+
+    public int getMaxStackSize() {
+        return maxStackSize;
+    }
+
+    /**
+     * Grows stack, so it can hold at least [size] values. Stack array is replaced, cached references should be reloaded
+     *
+     * @return false if size exceeds maximum size of the stack
+     */
+    public boolean ensureCapacity(int size) {
+        if (size <= stack.length) {
+            return true;
+        }
+        if (size > maxStackSize) {
+            return false;
+        }
+
+        int newLength = (int) Math.min(Math.max((long) stack.length * 2, size), maxStackSize);
+        stack = Arrays.copyOf(stack, newLength);
+        return true;
     }
 
     public void reserveOnStack(int count) {
+        checkCapacity(stackIndex + 1 + count);
         stackIndex += count;
     }
 
@@ -23,6 +72,7 @@ public class ExecutionState {
     }
 
     public void pushToStack(int value) {
+        checkCapacity(stackIndex + 2);
         stackIndex++;
         stack[stackIndex] = value;
     }
@@ -36,4 +86,10 @@ public class ExecutionState {
     public int peekFromStack() {
         return stack[stackIndex];
     }
+
+    private void checkCapacity(int size) {
+        if (!ensureCapacity(size)) {
+            throw new ScriptStackOverflowException(null, maxStackSize);
+        }
+    }
 }
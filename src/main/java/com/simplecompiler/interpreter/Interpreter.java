@@ -1,229 +1,565 @@
 package com.simplecompiler.interpreter;
 
 import com.simplecompiler.interpreter.NativeFunctionManager.Function;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.lang.invoke.MethodHandle;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
+ * Interpreter keeps no state of executions, only native functions bound per program, so after native functions are registered
+ * it can execute the same CompiledProgram from several threads at the same time.
+ *
  * @author Dmitry
  */
-public class Interpreter {
+public class Interpreter implements ProgramExecutor {
+
+    /**
+     * Profiling hooks are compiled into the dispatch loop only with -Dsimplecompiler.profiling=true,
+     * otherwise the constant removes them and the loop pays nothing
+     */
+    public static final boolean PROFILING = Boolean.getBoolean("simplecompiler.profiling");
 
     private NativeFunctionManager nativeFunctionManager = new NativeFunctionManager();
+    private int initialStackSize = ExecutionState.DEFAULT_INITIAL_STACK_SIZE;
+    private int maxStackSize = ExecutionState.DEFAULT_MAX_STACK_SIZE;
+    private int memoCacheSize = MemoCache.DEFAULT_SIZE;
+    private final Map<CompiledProgram, Function[]> linkedPrograms = new WeakHashMap<>();
 
+    @Override
     public void execute(String bytecodeString) {
-        Map<String, Integer> labelIndexes = new HashMap<>();
-        String[] bytecode = bytecodeString.split("\n", -1);
-        List<String> directives = new ArrayList<>();
-        fillLabelsExtractDirectivesAndTrim(bytecode, labelIndexes, directives);
-        ExecutionState executionState = new ExecutionState();
-        processDirectives(directives, executionState);
-        if (!labelIndexes.containsKey("main")) {
+        execute(new BytecodeLoader().load(bytecodeString));
+    }
+
+    /**
+     * Initial number of ints in the stack of every execution
+     */
+    public void setInitialStackSize(int initialStackSize) {
+        this.initialStackSize = initialStackSize;
+    }
+
+    /**
+     * Stack grows on demand up to this number of ints, then ScriptStackOverflowException is thrown
+     */
+    public void setMaxStackSize(int maxStackSize) {
+        this.maxStackSize = maxStackSize;
+    }
+
+    /**
+     * Maximum number of cached results of every memoized function
+     */
+    public void setMemoCacheSize(int memoCacheSize) {
+        this.memoCacheSize = memoCacheSize;
+    }
+
+    @Override
+    public void execute(CompiledProgram program) {
+        execute(program, null);
+    }
+
+    /**
+     * @param memoCaches if not null, receives caches of memoized functions by function name, so hits and misses can be read after execution
+     */
+    public void execute(CompiledProgram program, Map<String, MemoCache> memoCaches) {
+        execute(program, memoCaches, null);
+    }
+
+    /**
+     * Executes the program and collects counters of executed instructions, calls and native calls
+     */
+    public ExecutionProfile profile(CompiledProgram program) {
+        if (!PROFILING) {
+            throw new IllegalStateException("Profiling is disabled, run with -Dsimplecompiler.profiling=true");
+        }
+        ExecutionProfile profile = new ExecutionProfile(program);
+        execute(program, null, profile);
+        return profile;
+    }
+
+    private void execute(CompiledProgram program, Map<String, MemoCache> memoCaches, ExecutionProfile profile) {
+        start(program, memoCaches, profile).resume(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Prepares execution of the program without running it, the script runs in slices by ScriptExecution.resume
+     */
+    public ScriptExecution start(CompiledProgram program) {
+        return start(program, null, null);
+    }
+
+    private ScriptExecution start(CompiledProgram program, Map<String, MemoCache> memoCaches, ExecutionProfile profile) {
+        int[] frameSizes = program.getFrameSizes();
+        Function[] nativeFunctions = link(program);
+        ExecutionState executionState = new ExecutionState(initialStackSize, maxStackSize);
+        executionState.profile = profile;
+        executionState.memoCaches = createMemoCaches(program);
+        if (memoCaches != null) {
+            for (MemoCache memoCache : executionState.memoCaches) {
+                memoCaches.put(memoCache.getFunctionName(), memoCache);
+            }
+        }
+        executionState.reserveOnStack(program.getGlobalVarCount());
+        if (program.getFunctionAddress("main") == -1) {
             throw new IllegalArgumentException("Bytecode does not contain 'main' function");
         }
+        return new ScriptExecution(this, program, nativeFunctions, frameSizes, executionState);
+    }
 
-        if (labelIndexes.containsKey("INIT_BLOCK")) {
-            executionState.pushToStack(-1);//return address
-            executionState.ip = labelIndexes.get("INIT_BLOCK");
-            executeBytecode(executionState, bytecode, labelIndexes);
+    /**
+     * Native functions are bound on the first execution of the program, later executions reuse them
+     */
+    private Function[] link(CompiledProgram program) {
+        synchronized (linkedPrograms) {
+            Function[] nativeFunctions = linkedPrograms.get(program);
+            if (nativeFunctions == null) {
+                nativeFunctions = new ProgramLinker().link(program, nativeFunctionManager);
+                linkedPrograms.put(program, nativeFunctions);
+            }
+            return nativeFunctions;
         }
+    }
 
-        executionState.pushToStack(-1);//return address
-        executionState.ip = labelIndexes.get("main");
-        executeBytecode(executionState, bytecode, labelIndexes);
+    private MemoCache[] createMemoCaches(CompiledProgram program) {
+        int[] addresses = program.getMemoFunctionAddresses();
+        MemoCache[] memoCaches = new MemoCache[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            memoCaches[i] = new MemoCache(findFunctionName(program, addresses[i]), program.getCode()[addresses[i] + 2], memoCacheSize);
+        }
+        return memoCaches;
     }
 
-    private void processDirectives(List<String> directives, ExecutionState executionState) {
-        for (String directive : directives) {
-            if (directive.startsWith("$global-var-count")) {
-                int globalVarCount = extractIntArgumentFromString("$global-var-count", directive);
-                executionState.reserveOnStack(globalVarCount);
-            }
+    /**
+     * Pushes frame of the function called from outside of the script, so it returns with ip == -1
+     */
+    void enterTopLevelFunction(ExecutionState executionState, CompiledProgram program, int functionAddress) {
+        //declared arguments get zeros, so the frame has the same layout as for a usual call
+        int argsCount = program.getCode()[functionAddress + 2];
+        for (int i = 0; i < argsCount; i++) {
+            executionState.pushToStack(0);
         }
+        executionState.pushToStack(-1);//return address
+        executionState.ip = functionAddress;
     }
 
-    private void executeBytecode(ExecutionState executionState, String[] bytecode, Map<String, Integer> labelIndexes) {
+    /**
+     * Runs until the top level function returns (ip is -1) or until preemptible execution runs out of budget
+     */
+    void executeBytecode(ExecutionState executionState, CompiledProgram program, Function[] nativeFunctions, int[] frameSizes) {
+        int[] code = program.getCode();
+        int[] stack = executionState.stack;
+        MemoCache[] memoCaches = executionState.memoCaches;
+        ExecutionProfile profile = executionState.profile;
+        int accumulator = executionState.accumulator;
+        int stackIndex = executionState.stackIndex;
+        int frameIndex = executionState.frameIndex;
+        int ip = executionState.ip;
+        int budget = executionState.budget;
         OUTER:
         while (true) {
-            String line = bytecode[executionState.ip];
-            executionState.ip++;
-            if (line.isEmpty()) {
-                continue;
-            }
-            String command;
-            int spaceIndex = line.indexOf(' ');
-            if (spaceIndex == -1) {
-                command = line;
-            } else {
-                command = line.substring(0, spaceIndex);
+            if (PROFILING && profile != null) {
+                profile.count(ip);
             }
-            switch (command) {
-                case "save":
-                    executionState.pushToStack(executionState.accumulator);
-                    break;
-                case "load-long":
-                    int value = Integer.parseInt(line.substring("load-long".length()).trim());
-                    executionState.accumulator = value;
-                    break;
-                case "call":
-                    String[] parts = line.split(" ", -1);
-                    String functionName = parts[1];
-                    int argsCount = Integer.parseInt(parts[2]);
-                    if (labelIndexes.containsKey(functionName)) {
-                        //executionState.stackIndex -= argsCount;
-                        executionState.pushToStack(executionState.ip);
-                        //executionState.reserveOnStack(argsCount);
-                        executionState.ip = labelIndexes.get(functionName);
-                    } else {
-                        executeInternalFunction(executionState, functionName, argsCount);
-                    }
+            switch (code[ip]) {
+                case Opcodes.SAVE:
+                    stack[++stackIndex] = accumulator;
+                    ip++;
                     break;
-                case "store-local-var": {
-                    int varIndex = extractIntArgumentFromString("store-local-var", line);
-                    int variableStackOffset = executionState.frameIndex + 1 + varIndex;
-                    executionState.stack[variableStackOffset] = executionState.accumulator;
+                case Opcodes.LOAD_LONG:
+                    accumulator = code[ip + 1];
+                    ip += 2;
                     break;
-                }
-                case "load-local-var": {
-                    int varIndex = extractIntArgumentFromString("load-local-var", line);
-                    int variableStackOffset = executionState.frameIndex + 1 + varIndex;
-                    executionState.accumulator = executionState.stack[variableStackOffset];
+                case Opcodes.CALL:
+                    stack[++stackIndex] = ip + 3;
+                    ip = code[ip + 1];
                     break;
-                }
-                case "load-global-var": {
-                    int varIndex = extractIntArgumentFromString("load-global-var", line);
-                    executionState.accumulator = executionState.stack[varIndex];
+                case Opcodes.TAIL_CALL: {
+                    //replace arguments of the current function by the new ones and keep return address and saved frame
+                    int argsCount = code[ip + 2];
+                    int argsBase = frameIndex - 1 - code[ip + 3];
+                    int returnAddress = stack[frameIndex - 1];
+                    int savedFrameIndex = stack[frameIndex];
+                    System.arraycopy(stack, stackIndex - argsCount + 1, stack, argsBase, argsCount);
+                    if (PROFILING && profile != null) {
+                        profile.exitFunction();
+                    }
+                    stackIndex = argsBase + argsCount;
+                    stack[stackIndex] = returnAddress;
+                    frameIndex = savedFrameIndex;
+                    ip = code[ip + 1];
                     break;
                 }
-                case "store-global-var": {
-                    int varIndex = extractIntArgumentFromString("store-global-var", line);
-                    executionState.stack[varIndex] = executionState.accumulator;
+                case Opcodes.CALL_NATIVE: {
+                    Function function = nativeFunctions[code[ip + 1]];
+                    if (PROFILING && profile != null) {
+                        executionState.accumulator = accumulator;
+                        executionState.stackIndex = stackIndex;
+                        executeProfiledNativeFunction(executionState, function, code[ip + 1], code[ip + 2]);
+                        accumulator = executionState.accumulator;
+                        stackIndex = executionState.stackIndex;
+                        ip += 3;
+                        break;
+                    }
+                    if (function.isPrimitive()) {
+                        int argsCount = code[ip + 2];
+                        stackIndex -= argsCount;
+                        accumulator = invokePrimitiveFunction(function, stack, stackIndex + 1, accumulator);
+                        ip += 3;
+                        break;
+                    }
+                    if (function.isIntRange()) {
+                        int argsCount = code[ip + 2];
+                        stackIndex -= argsCount;
+                        accumulator = invokeIntRangeFunction(function, stack, stackIndex + 1, argsCount, accumulator);
+                        ip += 3;
+                        break;
+                    }
+                    executionState.accumulator = accumulator;
+                    executionState.stackIndex = stackIndex;
+                    executeInternalFunction(executionState, function, code[ip + 2]);
+                    accumulator = executionState.accumulator;
+                    stackIndex = executionState.stackIndex;
+                    ip += 3;
                     break;
                 }
-                case "load-arg": {
-                    int argIndex = extractIntArgumentFromString("load-arg", line);
-                    int variableStackOffset = executionState.frameIndex - 2 - argIndex;
-                    executionState.accumulator = executionState.stack[variableStackOffset];
+                case Opcodes.STORE_LOCAL_VAR:
+                    stack[frameIndex + 1 + code[ip + 1]] = accumulator;
+                    ip += 2;
                     break;
-                }
-                case "add":
-                    executionState.accumulator += executionState.popFromStack();
+                case Opcodes.LOAD_LOCAL_VAR:
+                    accumulator = stack[frameIndex + 1 + code[ip + 1]];
+                    ip += 2;
                     break;
-                case "sub":
-                    executionState.accumulator -= executionState.popFromStack();
+                case Opcodes.LOAD_GLOBAL_VAR:
+                    accumulator = stack[code[ip + 1]];
+                    ip += 2;
                     break;
-                case "mul":
-                    executionState.accumulator *= executionState.popFromStack();
+                case Opcodes.STORE_GLOBAL_VAR:
+                    stack[code[ip + 1]] = accumulator;
+                    ip += 2;
                     break;
-                case "div":
-                    executionState.accumulator /= executionState.popFromStack();
+                case Opcodes.LOAD_ARG:
+                    accumulator = stack[frameIndex - 2 - code[ip + 1]];
+                    ip += 2;
                     break;
-                case "less":
-                    executionState.accumulator = executionState.accumulator < executionState.popFromStack() ? 1 : 0;
+                case Opcodes.ADD:
+                    accumulator += stack[stackIndex--];
+                    ip++;
                     break;
-                case "not":
-                    executionState.accumulator = executionState.accumulator == 0 ? 1 : 0;
+                case Opcodes.SUB:
+                    accumulator -= stack[stackIndex--];
+                    ip++;
                     break;
-                case "eq":
-                    executionState.accumulator = executionState.accumulator == executionState.popFromStack() ? 1 : 0;
+                case Opcodes.MUL:
+                    accumulator *= stack[stackIndex--];
+                    ip++;
                     break;
-                case "neq":
-                    executionState.accumulator = executionState.accumulator != executionState.popFromStack() ? 1 : 0;
+                case Opcodes.DIV:
+                    accumulator /= stack[stackIndex--];
+                    ip++;
                     break;
-                case "more": {
-                    int operand = executionState.popFromStack();
-                    executionState.accumulator = executionState.accumulator > operand ? 1 : 0;
+                case Opcodes.LESS:
+                    accumulator = accumulator < stack[stackIndex--] ? 1 : 0;
+                    ip++;
                     break;
-                }
-                case "bitand":
-                    executionState.accumulator = executionState.accumulator & executionState.popFromStack();
+                case Opcodes.MORE:
+                    accumulator = accumulator > stack[stackIndex--] ? 1 : 0;
+                    ip++;
+                    break;
+                case Opcodes.NOT:
+                    accumulator = accumulator == 0 ? 1 : 0;
+                    ip++;
+                    break;
+                case Opcodes.EQ:
+                    accumulator = accumulator == stack[stackIndex--] ? 1 : 0;
+                    ip++;
                     break;
-                case "bitor":
-                    executionState.accumulator = executionState.accumulator | executionState.popFromStack();
+                case Opcodes.NEQ:
+                    accumulator = accumulator != stack[stackIndex--] ? 1 : 0;
+                    ip++;
                     break;
-                case "bitxor":
-                    executionState.accumulator = executionState.accumulator ^ executionState.popFromStack();
+                case Opcodes.BITAND:
+                    accumulator &= stack[stackIndex--];
+                    ip++;
                     break;
-                case "lshift":
-                    executionState.accumulator = executionState.accumulator << executionState.popFromStack();
+                case Opcodes.BITOR:
+                    accumulator |= stack[stackIndex--];
+                    ip++;
                     break;
-                case "rshift":
-                    executionState.accumulator = executionState.accumulator >> executionState.popFromStack();
+                case Opcodes.BITXOR:
+                    accumulator ^= stack[stackIndex--];
+                    ip++;
                     break;
-                case "urshift":
-                    executionState.accumulator = executionState.accumulator >>> executionState.popFromStack();
+                case Opcodes.LSHIFT:
+                    accumulator <<= stack[stackIndex--];
+                    ip++;
                     break;
-                case "and": {
-                    boolean operand = executionState.popFromStack() != 0;
-                    executionState.accumulator = executionState.accumulator != 0 && operand ? 1 : 0;
+                case Opcodes.RSHIFT:
+                    accumulator >>= stack[stackIndex--];
+                    ip++;
+                    break;
+                case Opcodes.URSHIFT:
+                    accumulator >>>= stack[stackIndex--];
+                    ip++;
+                    break;
+                case Opcodes.AND: {
+                    boolean operand = stack[stackIndex--] != 0;
+                    accumulator = accumulator != 0 && operand ? 1 : 0;
+                    ip++;
                     break;
                 }
-                case "or": {
-                    boolean operand = executionState.popFromStack() != 0;
-                    executionState.accumulator = executionState.accumulator != 0 || operand ? 1 : 0;
+                case Opcodes.OR: {
+                    boolean operand = stack[stackIndex--] != 0;
+                    accumulator = accumulator != 0 || operand ? 1 : 0;
+                    ip++;
                     break;
                 }
-                case "branch-false":
-                    if (executionState.accumulator == 0) {
-                        String label = line.substring("branch-false".length()).trim();
-                        if (!labelIndexes.containsKey(label)) {
-                            throw new IllegalArgumentException("Cannot find label [" + label + "]");
-                        }
-                        int destIndex = labelIndexes.get(label);
-                        executionState.ip = destIndex;
+                case Opcodes.ADD_LONG:
+                    accumulator += code[ip + 1];
+                    ip += 2;
+                    break;
+                case Opcodes.SUB_LONG:
+                    accumulator -= code[ip + 1];
+                    ip += 2;
+                    break;
+                case Opcodes.MUL_LONG:
+                    accumulator *= code[ip + 1];
+                    ip += 2;
+                    break;
+                case Opcodes.DIV_LONG:
+                    accumulator /= code[ip + 1];
+                    ip += 2;
+                    break;
+                case Opcodes.LESS_LONG:
+                    accumulator = accumulator < code[ip + 1] ? 1 : 0;
+                    ip += 2;
+                    break;
+                case Opcodes.MORE_LONG:
+                    accumulator = accumulator > code[ip + 1] ? 1 : 0;
+                    ip += 2;
+                    break;
+                case Opcodes.EQ_LONG:
+                    accumulator = accumulator == code[ip + 1] ? 1 : 0;
+                    ip += 2;
+                    break;
+                case Opcodes.NEQ_LONG:
+                    accumulator = accumulator != code[ip + 1] ? 1 : 0;
+                    ip += 2;
+                    break;
+                case Opcodes.BITAND_LONG:
+                    accumulator &= code[ip + 1];
+                    ip += 2;
+                    break;
+                case Opcodes.BITOR_LONG:
+                    accumulator |= code[ip + 1];
+                    ip += 2;
+                    break;
+                case Opcodes.BITXOR_LONG:
+                    accumulator ^= code[ip + 1];
+                    ip += 2;
+                    break;
+                case Opcodes.LSHIFT_LONG:
+                    accumulator <<= code[ip + 1];
+                    ip += 2;
+                    break;
+                case Opcodes.RSHIFT_LONG:
+                    accumulator >>= code[ip + 1];
+                    ip += 2;
+                    break;
+                case Opcodes.URSHIFT_LONG:
+                    accumulator >>>= code[ip + 1];
+                    ip += 2;
+                    break;
+                case Opcodes.PUSH_LONG:
+                    accumulator = code[ip + 1];
+                    stack[++stackIndex] = accumulator;
+                    ip += 2;
+                    break;
+                case Opcodes.PUSH_ARG:
+                    accumulator = stack[frameIndex - 2 - code[ip + 1]];
+                    stack[++stackIndex] = accumulator;
+                    ip += 2;
+                    break;
+                case Opcodes.PUSH_LOCAL_VAR:
+                    accumulator = stack[frameIndex + 1 + code[ip + 1]];
+                    stack[++stackIndex] = accumulator;
+                    ip += 2;
+                    break;
+                case Opcodes.PUSH_GLOBAL_VAR:
+                    accumulator = stack[code[ip + 1]];
+                    stack[++stackIndex] = accumulator;
+                    ip += 2;
+                    break;
+                case Opcodes.LOAD_ARG_ADD_LONG:
+                    accumulator = stack[frameIndex - 2 - code[ip + 1]] + code[ip + 2];
+                    ip += 3;
+                    break;
+                case Opcodes.LOAD_ARG_SUB_LONG:
+                    accumulator = stack[frameIndex - 2 - code[ip + 1]] - code[ip + 2];
+                    ip += 3;
+                    break;
+                case Opcodes.LESS_BRANCH_FALSE:
+                    accumulator = accumulator < stack[stackIndex--] ? 1 : 0;
+                    ip = accumulator == 0 ? code[ip + 1] : ip + 2;
+                    break;
+                case Opcodes.MORE_BRANCH_FALSE:
+                    accumulator = accumulator > stack[stackIndex--] ? 1 : 0;
+                    ip = accumulator == 0 ? code[ip + 1] : ip + 2;
+                    break;
+                case Opcodes.EQ_BRANCH_FALSE:
+                    accumulator = accumulator == stack[stackIndex--] ? 1 : 0;
+                    ip = accumulator == 0 ? code[ip + 1] : ip + 2;
+                    break;
+                case Opcodes.NEQ_BRANCH_FALSE:
+                    accumulator = accumulator != stack[stackIndex--] ? 1 : 0;
+                    ip = accumulator == 0 ? code[ip + 1] : ip + 2;
+                    break;
+                case Opcodes.LESS_LONG_BRANCH_FALSE:
+                    accumulator = accumulator < code[ip + 1] ? 1 : 0;
+                    ip = accumulator == 0 ? code[ip + 2] : ip + 3;
+                    break;
+                case Opcodes.MORE_LONG_BRANCH_FALSE:
+                    accumulator = accumulator > code[ip + 1] ? 1 : 0;
+                    ip = accumulator == 0 ? code[ip + 2] : ip + 3;
+                    break;
+                case Opcodes.EQ_LONG_BRANCH_FALSE:
+                    accumulator = accumulator == code[ip + 1] ? 1 : 0;
+                    ip = accumulator == 0 ? code[ip + 2] : ip + 3;
+                    break;
+                case Opcodes.NEQ_LONG_BRANCH_FALSE:
+                    accumulator = accumulator != code[ip + 1] ? 1 : 0;
+                    ip = accumulator == 0 ? code[ip + 2] : ip + 3;
+                    break;
+                case Opcodes.BRANCH_FALSE:
+                    if (accumulator == 0) {
+                        ip = code[ip + 1];
+                    } else {
+                        ip += 2;
                     }
                     break;
-                case "branch":
-                    String label = line.substring("branch".length()).trim();
-                    if (!labelIndexes.containsKey(label)) {
-                        throw new IllegalArgumentException("Cannot find label [" + label + "]");
+                case Opcodes.BRANCH:
+                    if (--budget < 0) {
+                        if (executionState.preemptible) {
+                            break OUTER;
+                        }
+                        budget = Integer.MAX_VALUE;
                     }
-                    int destIndex = labelIndexes.get(label);
-                    executionState.ip = destIndex;
+                    ip = code[ip + 1];
                     break;
-                case "enter": {
+                case Opcodes.ENTER:
+                    if (--budget < 0) {
+                        if (executionState.preemptible) {
+                            break OUTER;
+                        }
+                        budget = Integer.MAX_VALUE;
+                    }
+                    if (stackIndex + frameSizes[ip] >= stack.length) {
+                        if (!executionState.ensureCapacity(stackIndex + frameSizes[ip] + 1)) {
+                            throw new ScriptStackOverflowException(findFunctionName(program, ip), executionState.getMaxStackSize());
+                        }
+                        stack = executionState.stack;
+                    }
                     //save frame
-                    executionState.pushToStack(executionState.frameIndex);
-                    executionState.frameIndex = executionState.stackIndex;
+                    stack[++stackIndex] = frameIndex;
+                    frameIndex = stackIndex;
                     //reserve space for local variables
-                    int localVarsCount = extractIntArgumentFromString("enter", line);
-                    executionState.reserveOnStack(localVarsCount);
+                    stackIndex += code[ip + 1];
+                    if (PROFILING && profile != null) {
+                        profile.enterFunction(ip, stackIndex + 1);
+                    }
+                    ip += 3;
                     break;
-                }
-                case "leave": {
-                    int localVarsCount = extractIntArgumentFromString("leave", line);
-                    int argumentsCount = extractLastIntArgumentFromString("leave", line);
-                    executionState.freeFromStack(localVarsCount);
-                    executionState.frameIndex = executionState.popFromStack();
-                    executionState.ip = executionState.popFromStack();
-                    if (executionState.ip == -1) {
+                case Opcodes.LEAVE: {
+                    int argumentsCount = code[ip + 2];
+                    stackIndex -= code[ip + 1];
+                    frameIndex = stack[stackIndex--];
+                    ip = stack[stackIndex--];
+                    if (PROFILING && profile != null) {
+                        profile.exitFunction();
+                    }
+                    if (ip == -1) {
                         break OUTER;
                     }
-                    executionState.freeFromStack(argumentsCount);
+                    stackIndex -= argumentsCount;
                     break;
                 }
-                case "label":
+                case Opcodes.ENTER_MEMO: {
+                    if (--budget < 0) {
+                        if (executionState.preemptible) {
+                            break OUTER;
+                        }
+                        budget = Integer.MAX_VALUE;
+                    }
+                    //arguments are followed by the return address
+                    int argumentsCount = code[ip + 2];
+                    MemoCache memoCache = memoCaches[code[ip + 3]];
+                    int slot = memoCache.find(stack, stackIndex - argumentsCount);
+                    if (slot != -1) {
+                        if (PROFILING && profile != null) {
+                            profile.enterFunction(ip, stackIndex + 1);
+                            profile.exitFunction();
+                        }
+                        accumulator = memoCache.getValue(slot);
+                        ip = stack[stackIndex--];
+                        if (ip == -1) {
+                            break OUTER;
+                        }
+                        stackIndex -= argumentsCount;
+                        break;
+                    }
+
+                    if (stackIndex + frameSizes[ip] >= stack.length) {
+                        if (!executionState.ensureCapacity(stackIndex + frameSizes[ip] + 1)) {
+                            throw new ScriptStackOverflowException(findFunctionName(program, ip), executionState.getMaxStackSize());
+                        }
+                        stack = executionState.stack;
+                    }
+                    stack[++stackIndex] = frameIndex;
+                    frameIndex = stackIndex;
+                    stackIndex += code[ip + 1];
+                    if (PROFILING && profile != null) {
+                        profile.enterFunction(ip, stackIndex + 1);
+                    }
+                    ip += 4;
+                    break;
+                }
+                case Opcodes.LEAVE_MEMO: {
+                    int argumentsCount = code[ip + 2];
+                    memoCaches[code[ip + 3]].put(stack, frameIndex - 1 - argumentsCount, accumulator);
+                    stackIndex -= code[ip + 1];
+                    frameIndex = stack[stackIndex--];
+                    ip = stack[stackIndex--];
+                    if (PROFILING && profile != null) {
+                        profile.exitFunction();
+                    }
+                    if (ip == -1) {
+                        break OUTER;
+                    }
+                    stackIndex -= argumentsCount;
                     break;
+                }
                 default:
-                    throw new IllegalStateException("Unknown bytecode [" + line + "]");
-                    
+                    throw new IllegalStateException("Unknown opcode [" + code[ip] + "] at [" + ip + "]");
             }
         }
-    }
 
-    private int extractIntArgumentFromString(String command, String fullString) {
-        String arg = fullString.substring(command.length()).trim();
-        if (arg.contains(" ")) {
-            arg = arg.substring(0, arg.indexOf(' '));
-        }
-        return Integer.parseInt(arg);
+        executionState.accumulator = accumulator;
+        executionState.stackIndex = stackIndex;
+        executionState.frameIndex = frameIndex;
+        executionState.ip = ip;
+        executionState.budget = budget;
     }
 
-    private int extractLastIntArgumentFromString(String command, String fullString) {
-        String arg = fullString.substring(fullString.lastIndexOf(" ") + 1).trim();
-        return Integer.parseInt(arg);
+    private void executeProfiledNativeFunction(ExecutionState executionState, Function function, int nativeIndex, int argsCount) {
+        long startNanos = System.nanoTime();
+        if (function.isPrimitive()) {
+            executionState.stackIndex -= argsCount;
+            executionState.accumulator = invokePrimitiveFunction(function, executionState.stack, executionState.stackIndex + 1, executionState.accumulator);
+        } else if (function.isIntRange()) {
+            executionState.stackIndex -= argsCount;
+            executionState.accumulator = invokeIntRangeFunction(function, executionState.stack, executionState.stackIndex + 1, argsCount, executionState.accumulator);
+        } else {
+            executeInternalFunction(executionState, function, argsCount);
+        }
+        executionState.profile.nativeCall(nativeIndex, System.nanoTime() - startNanos);
     }
 
     private Object[] extractArguments(ExecutionState executionState, int argsCount) {
@@ -236,18 +572,14 @@ public class Interpreter {
         return args;
     }
 
-    private void executeInternalFunction(ExecutionState executionState, String functionName, int argsCount) {
-        Function function = nativeFunctionManager.findFunction(functionName);
-        if (function == null) {
-            throw new IllegalArgumentException("Cannot find function [" + functionName + "]");
-        }
+    private void executeInternalFunction(ExecutionState executionState, Function function, int argsCount) {
         Object[] extractedArguments = extractArguments(executionState, argsCount);
         Class returnType = function.method.getReturnType();
         Object result;
         try {
             result = function.method.invoke(function.ownerObject, new Object[]{extractedArguments});
         } catch (Exception ex) {
-            throw new RuntimeException("Error while execute function [" + functionName + "]", ex);
+            throw new RuntimeException("Error while execute function [" + function.name + "]", ex);
         }
 
         if (returnType != void.class) {
@@ -255,23 +587,84 @@ public class Interpreter {
         }
     }
 
-    private void fillLabelsExtractDirectivesAndTrim(String[] bytecode, Map<String, Integer> labelIndexes, List<String> directivesToCollect) {
-        for (int i = 0; i < bytecode.length; i++) {
-            String line = bytecode[i].trim();
-            bytecode[i] = line;
-            if (line.startsWith("$")) {
-                directivesToCollect.add(line);
-            } else if (line.startsWith("label")) {
-                String label = line.substring("label".length()).trim();
-                if (labelIndexes.containsKey(label)) {
-                    throw new IllegalArgumentException("duplicate label [" + label + "] on line [" + i + "] and also on line [" + labelIndexes.get(label) + "]");
+    /**
+     * Calls function with int parameters directly with values from the stack, arguments are neither copied nor boxed
+     *
+     * @return new value of accumulator
+     */
+    private int invokePrimitiveFunction(Function function, int[] stack, int firstArgIndex, int accumulator) {
+        MethodHandle handle = function.handle;
+        try {
+            if (function.isVoid()) {
+                switch (function.argsCount) {
+                    case 0:
+                        handle.invokeExact();
+                        break;
+                    case 1:
+                        handle.invokeExact(stack[firstArgIndex]);
+                        break;
+                    case 2:
+                        handle.invokeExact(stack[firstArgIndex], stack[firstArgIndex + 1]);
+                        break;
+                    case 3:
+                        handle.invokeExact(stack[firstArgIndex], stack[firstArgIndex + 1], stack[firstArgIndex + 2]);
+                        break;
+                    case 4:
+                        handle.invokeExact(stack[firstArgIndex], stack[firstArgIndex + 1], stack[firstArgIndex + 2], stack[firstArgIndex + 3]);
+                        break;
+                    default:
+                        handle.invokeExact(stack[firstArgIndex], stack[firstArgIndex + 1], stack[firstArgIndex + 2], stack[firstArgIndex + 3], stack[firstArgIndex + 4]);
+                        break;
                 }
+                return accumulator;
+            }
+
+            switch (function.argsCount) {
+                case 0:
+                    return (int) handle.invokeExact();
+                case 1:
+                    return (int) handle.invokeExact(stack[firstArgIndex]);
+                case 2:
+                    return (int) handle.invokeExact(stack[firstArgIndex], stack[firstArgIndex + 1]);
+                case 3:
+                    return (int) handle.invokeExact(stack[firstArgIndex], stack[firstArgIndex + 1], stack[firstArgIndex + 2]);
+                case 4:
+                    return (int) handle.invokeExact(stack[firstArgIndex], stack[firstArgIndex + 1], stack[firstArgIndex + 2], stack[firstArgIndex + 3]);
+                default:
+                    return (int) handle.invokeExact(stack[firstArgIndex], stack[firstArgIndex + 1], stack[firstArgIndex + 2], stack[firstArgIndex + 3], stack[firstArgIndex + 4]);
+            }
+        } catch (Throwable ex) {
+            throw new RuntimeException("Error while execute function [" + function.name + "]", ex);
+        }
+    }
+
+    /**
+     * Passes arguments as the range of the stack, nothing is copied
+     *
+     * @return new value of accumulator
+     */
+    private int invokeIntRangeFunction(Function function, int[] stack, int firstArgIndex, int argsCount, int accumulator) {
+        try {
+            if (function.isVoid()) {
+                function.handle.invokeExact(stack, firstArgIndex, argsCount);
+                return accumulator;
+            }
+            return (int) function.handle.invokeExact(stack, firstArgIndex, argsCount);
+        } catch (Throwable ex) {
+            throw new RuntimeException("Error while execute function [" + function.name + "]", ex);
+        }
+    }
 
-                labelIndexes.put(label, i + 1);
+    private String findFunctionName(CompiledProgram program, int address) {
+        for (Map.Entry<String, Integer> function : program.getFunctions().entrySet()) {
+            if (function.getValue() == address) {
+                return function.getKey();
             }
         }
+        return null;
     }
 
+    @Override
     public NativeFunctionManager getNativeFunctionManager() {
         return nativeFunctionManager;
     }
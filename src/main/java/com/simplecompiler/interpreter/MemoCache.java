@@ -0,0 +1,111 @@
+package com.simplecompiler.interpreter;
+
+import java.util.Arrays;
+
+/**
+ * Results of one memoized function: arguments tuple to result.<br>
+ * Keys are kept as plain ints in one array, arguments are compared in place on the interpreter stack, so lookup allocates nothing.
+ * Cache is direct mapped with the bounded number of entries: new result replaces the entry that has the same slot,
+ * so recently computed results win and the size never grows over the bound.
+ *
+ * @author Dmitry
+ */
+public class MemoCache {
+
+    public static final int DEFAULT_SIZE = 4096;
+
+    private final String functionName;
+    private final int argsCount;
+    private final int mask;
+    private final int[] keys;
+    private final int[] values;
+    private final boolean[] used;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param size maximum number of entries, rounded up to the power of two
+     */
+    public MemoCache(String functionName, int argsCount, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size of memo cache should be positive, but found [" + size + "]");
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.functionName = functionName;
+        this.argsCount = argsCount;
+        this.mask = capacity - 1;
+        this.keys = new int[capacity * argsCount];
+        this.values = new int[capacity];
+        this.used = new boolean[capacity];
+    }
+
+    /**
+     * @param firstArgIndex index of the first argument on the stack, other arguments follow it
+     * @return slot with the result, or -1 if arguments are not in the cache
+     */
+    public int find(int[] stack, int firstArgIndex) {
+        int slot = slot(stack, firstArgIndex);
+        if (used[slot] && keyEquals(slot, stack, firstArgIndex)) {
+            hits++;
+            return slot;
+        }
+        misses++;
+        return -1;
+    }
+
+    public int getValue(int slot) {
+        return values[slot];
+    }
+
+    public void put(int[] stack, int firstArgIndex, int value) {
+        int slot = slot(stack, firstArgIndex);
+        System.arraycopy(stack, firstArgIndex, keys, slot * argsCount, argsCount);
+        values[slot] = value;
+        used[slot] = true;
+    }
+
+    /**
+     * Removes all entries, counters are kept
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+    }
+
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    public int getSize() {
+        return used.length;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private int slot(int[] stack, int firstArgIndex) {
+        int hash = 0;
+        for (int i = 0; i < argsCount; i++) {
+            hash = hash * 31 + stack[firstArgIndex + i];
+        }
+        hash *= 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private boolean keyEquals(int slot, int[] stack, int firstArgIndex) {
+        int keyIndex = slot * argsCount;
+        for (int i = 0; i < argsCount; i++) {
+            if (keys[keyIndex + i] != stack[firstArgIndex + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
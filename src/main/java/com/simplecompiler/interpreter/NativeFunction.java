@@ -10,4 +10,9 @@ import java.lang.annotation.RetentionPolicy;
 public @interface NativeFunction {
 
     public String name();
+
+    /**
+     * Number of arguments checked when program is linked, -1 means any number of arguments
+     */
+    public int argsCount() default -1;
 }
@@ -1,9 +1,16 @@
 package com.simplecompiler.interpreter;
 
+import java.io.Flushable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -12,10 +19,16 @@ import java.util.Set;
  */
 public class NativeFunctionManager {
 
+    public static final int MAX_PRIMITIVE_ARGS_COUNT = 5;
+
     private Map<String, Function> functionsMap = new HashMap<>();
     private Set<Class> processedClasses = new HashSet<>();
+    private List<Flushable> flushables = new ArrayList<>();
 
     public void registerFunctions(Object objectWithFunctions) {
+        if (objectWithFunctions instanceof Flushable) {
+            flushables.add((Flushable) objectWithFunctions);
+        }
         Class clazz = objectWithFunctions.getClass();
         while (clazz != null) {
             if (clazz == Object.class) {
@@ -33,11 +46,13 @@ public class NativeFunctionManager {
                     method.setAccessible(true);
                     Function function = new Function();
                     function.name = method.getAnnotation(NativeFunction.class).name();
+                    function.argsCount = method.getAnnotation(NativeFunction.class).argsCount();
                     function.ownerObject = objectWithFunctions;
                     if ((method.getModifiers() & Modifier.STATIC) > 0) {
                         function.ownerObject = null;
                     }
                     function.method = method;
+                    bindPrimitiveSignature(function);
                     if (functionsMap.containsKey(function.name)) {
                         throw new IllegalArgumentException("You already registered native function [" + function.name + "]");
                     }
@@ -53,10 +68,94 @@ public class NativeFunctionManager {
         return functionsMap.get(name);
     }
 
+    /**
+     * Flushes registered objects that implement Flushable, executors call it when the script is finished
+     */
+    public void flush() {
+        for (Flushable flushable : flushables) {
+            try {
+                flushable.flush();
+            } catch (IOException ex) {
+                throw new RuntimeException("Error while flush native functions of " + flushable.getClass().getSimpleName(), ex);
+            }
+        }
+    }
+
+    /**
+     * Function with int parameters and int or void result is called through MethodHandle without boxing.
+     * Function with (int[] values, int offset, int count) parameters gets any number of arguments as a range of the array,
+     * the interpreter passes its stack, so the array is valid only during the call.
+     * Function with single Object[] parameter keeps reflective call with boxed arguments.
+     */
+    private void bindPrimitiveSignature(Function function) {
+        Method method = function.method;
+        Class[] parameterTypes = method.getParameterTypes();
+        if (Arrays.equals(parameterTypes, new Class[]{Object[].class})) {
+            return;
+        }
+        if (Arrays.equals(parameterTypes, new Class[]{int[].class, int.class, int.class})) {
+            function.intRange = true;
+            bindHandle(function);
+            return;
+        }
+
+        for (Class parameterType : parameterTypes) {
+            if (parameterType != int.class) {
+                throw new IllegalArgumentException("Native function [" + function.name + "] should take Object[], (int[], int, int) or only int parameters");
+            }
+        }
+        if (parameterTypes.length > MAX_PRIMITIVE_ARGS_COUNT) {
+            throw new IllegalArgumentException("Native function [" + function.name + "] has more than " + MAX_PRIMITIVE_ARGS_COUNT + " int parameters, use Object[] parameter instead");
+        }
+        if (function.argsCount != -1 && function.argsCount != parameterTypes.length) {
+            throw new IllegalArgumentException("Native function [" + function.name + "] declares [" + function.argsCount + "] arguments, but has [" + parameterTypes.length + "] parameters");
+        }
+
+        function.argsCount = parameterTypes.length;
+        bindHandle(function);
+    }
+
+    private void bindHandle(Function function) {
+        if (function.method.getReturnType() != int.class && function.method.getReturnType() != void.class) {
+            throw new IllegalArgumentException("Native function [" + function.name + "] with int parameters should return int or void");
+        }
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflect(function.method);
+            function.handle = function.ownerObject == null ? handle : handle.bindTo(function.ownerObject);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Cannot bind native function [" + function.name + "]", ex);
+        }
+    }
+
     public static class Function {
 
         public String name;
+        public int argsCount;
         public Method method;
         public Object ownerObject;
+        /**
+         * Bound handle of type (int...)int or (int...)void, for int range function (int[], int, int)int or (int[], int, int)void,
+         * null if function takes Object[]
+         */
+        public MethodHandle handle;
+        public boolean intRange;
+
+        /**
+         * @return true if function takes fixed number of int parameters
+         */
+        public boolean isPrimitive() {
+            return handle != null && !intRange;
+        }
+
+        /**
+         * @return true if function takes (int[] values, int offset, int count)
+         */
+        public boolean isIntRange() {
+            return intRange;
+        }
+
+        public boolean isVoid() {
+            return method.getReturnType() == void.class;
+        }
     }
 }
@@ -0,0 +1,200 @@
+package com.simplecompiler.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Numeric opcodes of the decoded instruction stream.<br>
+ * Every instruction is stored in the int[] as opcode followed by its operands.
+ * Branch and call targets are absolute indexes in the same int[].<br>
+ * Superinstructions (push-*, load-arg-*-long, *-branch-false) replace the most common sequences of two instructions,
+ * they are selected by BytecodeLoader and have textual form as any other instruction.
+ *
+ * @author Dmitry
+ */
+public class Opcodes {
+
+    public static final int SAVE = 0;
+    public static final int LOAD_LONG = 1;
+    public static final int CALL = 2;//address argsCount
+    public static final int CALL_NATIVE = 3;//nativeFunctionIndex argsCount
+    public static final int STORE_LOCAL_VAR = 4;
+    public static final int LOAD_LOCAL_VAR = 5;
+    public static final int LOAD_GLOBAL_VAR = 6;
+    public static final int STORE_GLOBAL_VAR = 7;
+    public static final int LOAD_ARG = 8;
+    public static final int ADD = 9;
+    public static final int SUB = 10;
+    public static final int MUL = 11;
+    public static final int DIV = 12;
+    public static final int LESS = 13;
+    public static final int MORE = 14;
+    public static final int EQ = 15;
+    public static final int NEQ = 16;
+    public static final int NOT = 17;
+    public static final int AND = 18;
+    public static final int OR = 19;
+    public static final int BITAND = 20;
+    public static final int BITOR = 21;
+    public static final int BITXOR = 22;
+    public static final int LSHIFT = 23;
+    public static final int RSHIFT = 24;
+    public static final int URSHIFT = 25;
+    public static final int BRANCH_FALSE = 26;//address
+    public static final int BRANCH = 27;//address
+    public static final int ENTER = 28;//localVarsCount argumentsCount
+    public static final int LEAVE = 29;//localVarsCount argumentsCount
+    public static final int ADD_LONG = 30;//value, accumulator = accumulator OP value
+    public static final int SUB_LONG = 31;
+    public static final int MUL_LONG = 32;
+    public static final int DIV_LONG = 33;
+    public static final int LESS_LONG = 34;
+    public static final int MORE_LONG = 35;
+    public static final int EQ_LONG = 36;
+    public static final int NEQ_LONG = 37;
+    public static final int BITAND_LONG = 38;
+    public static final int BITOR_LONG = 39;
+    public static final int BITXOR_LONG = 40;
+    public static final int LSHIFT_LONG = 41;
+    public static final int RSHIFT_LONG = 42;
+    public static final int URSHIFT_LONG = 43;
+    //superinstructions
+    public static final int PUSH_LONG = 44;//value, load-long + save
+    public static final int PUSH_ARG = 45;//argIndex, load-arg + save
+    public static final int PUSH_LOCAL_VAR = 46;//varIndex, load-local-var + save
+    public static final int PUSH_GLOBAL_VAR = 47;//varIndex, load-global-var + save
+    public static final int LOAD_ARG_ADD_LONG = 48;//argIndex value, load-arg + add-long
+    public static final int LOAD_ARG_SUB_LONG = 49;//argIndex value, load-arg + sub-long
+    public static final int LESS_BRANCH_FALSE = 50;//address, less + branch-false
+    public static final int MORE_BRANCH_FALSE = 51;
+    public static final int EQ_BRANCH_FALSE = 52;
+    public static final int NEQ_BRANCH_FALSE = 53;
+    public static final int LESS_LONG_BRANCH_FALSE = 54;//value address, less-long + branch-false
+    public static final int MORE_LONG_BRANCH_FALSE = 55;
+    public static final int EQ_LONG_BRANCH_FALSE = 56;
+    public static final int NEQ_LONG_BRANCH_FALSE = 57;
+    public static final int TAIL_CALL = 58;//address argsCount callerArgsCount
+    //enter and leave of memoized function
+    public static final int ENTER_MEMO = 59;//localVarsCount argumentsCount memoIndex
+    public static final int LEAVE_MEMO = 60;//localVarsCount argumentsCount memoIndex
+
+    private static final int OPCODES_COUNT = 61;
+    private static final String[] NAMES = new String[OPCODES_COUNT];
+    private static final int[] OPERANDS_COUNT = new int[OPCODES_COUNT];
+    private static final int[] ADDRESS_OPERAND_INDEX = new int[OPCODES_COUNT];
+    private static final Map<String, Integer> OPCODES_BY_NAME = new HashMap<>();
+
+    static {
+        define(SAVE, "save", 0);
+        define(LOAD_LONG, "load-long", 1);
+        define(CALL, "call", 2);
+        define(CALL_NATIVE, "call", 2);
+        define(STORE_LOCAL_VAR, "store-local-var", 1);
+        define(LOAD_LOCAL_VAR, "load-local-var", 1);
+        define(LOAD_GLOBAL_VAR, "load-global-var", 1);
+        define(STORE_GLOBAL_VAR, "store-global-var", 1);
+        define(LOAD_ARG, "load-arg", 1);
+        define(ADD, "add", 0);
+        define(SUB, "sub", 0);
+        define(MUL, "mul", 0);
+        define(DIV, "div", 0);
+        define(LESS, "less", 0);
+        define(MORE, "more", 0);
+        define(EQ, "eq", 0);
+        define(NEQ, "neq", 0);
+        define(NOT, "not", 0);
+        define(AND, "and", 0);
+        define(OR, "or", 0);
+        define(BITAND, "bitand", 0);
+        define(BITOR, "bitor", 0);
+        define(BITXOR, "bitxor", 0);
+        define(LSHIFT, "lshift", 0);
+        define(RSHIFT, "rshift", 0);
+        define(URSHIFT, "urshift", 0);
+        define(BRANCH_FALSE, "branch-false", 1, 0);
+        define(BRANCH, "branch", 1, 0);
+        define(ENTER, "enter", 2);
+        define(LEAVE, "leave", 2);
+        define(ADD_LONG, "add-long", 1);
+        define(SUB_LONG, "sub-long", 1);
+        define(MUL_LONG, "mul-long", 1);
+        define(DIV_LONG, "div-long", 1);
+        define(LESS_LONG, "less-long", 1);
+        define(MORE_LONG, "more-long", 1);
+        define(EQ_LONG, "eq-long", 1);
+        define(NEQ_LONG, "neq-long", 1);
+        define(BITAND_LONG, "bitand-long", 1);
+        define(BITOR_LONG, "bitor-long", 1);
+        define(BITXOR_LONG, "bitxor-long", 1);
+        define(LSHIFT_LONG, "lshift-long", 1);
+        define(RSHIFT_LONG, "rshift-long", 1);
+        define(URSHIFT_LONG, "urshift-long", 1);
+        define(PUSH_LONG, "push-long", 1);
+        define(PUSH_ARG, "push-arg", 1);
+        define(PUSH_LOCAL_VAR, "push-local-var", 1);
+        define(PUSH_GLOBAL_VAR, "push-global-var", 1);
+        define(LOAD_ARG_ADD_LONG, "load-arg-add-long", 2);
+        define(LOAD_ARG_SUB_LONG, "load-arg-sub-long", 2);
+        define(LESS_BRANCH_FALSE, "less-branch-false", 1, 0);
+        define(MORE_BRANCH_FALSE, "more-branch-false", 1, 0);
+        define(EQ_BRANCH_FALSE, "eq-branch-false", 1, 0);
+        define(NEQ_BRANCH_FALSE, "neq-branch-false", 1, 0);
+        define(LESS_LONG_BRANCH_FALSE, "less-long-branch-false", 2, 1);
+        define(MORE_LONG_BRANCH_FALSE, "more-long-branch-false", 2, 1);
+        define(EQ_LONG_BRANCH_FALSE, "eq-long-branch-false", 2, 1);
+        define(NEQ_LONG_BRANCH_FALSE, "neq-long-branch-false", 2, 1);
+        define(TAIL_CALL, "tail-call", 3);
+        define(ENTER_MEMO, "enter-memo", 3);
+        define(LEAVE_MEMO, "leave-memo", 3);
+    }
+
+    private static void define(int opcode, String name, int operandsCount) {
+        define(opcode, name, operandsCount, -1);
+    }
+
+    private static void define(int opcode, String name, int operandsCount, int addressOperandIndex) {
+        NAMES[opcode] = name;
+        OPERANDS_COUNT[opcode] = operandsCount;
+        ADDRESS_OPERAND_INDEX[opcode] = addressOperandIndex;
+        if (opcode != CALL_NATIVE) {
+            OPCODES_BY_NAME.put(name, opcode);
+        }
+    }
+
+    /**
+     * @return true for the first instruction of a function
+     */
+    public static boolean isEnter(int opcode) {
+        return opcode == ENTER || opcode == ENTER_MEMO;
+    }
+
+    /**
+     * @return true if the int is one of the defined opcodes
+     */
+    public static boolean isValid(int opcode) {
+        return opcode >= 0 && opcode < OPCODES_COUNT && NAMES[opcode] != null;
+    }
+
+    public static String getName(int opcode) {
+        return NAMES[opcode];
+    }
+
+    public static int getOperandsCount(int opcode) {
+        return OPERANDS_COUNT[opcode];
+    }
+
+    /**
+     * @return index of the operand that holds branch target, or -1 if instruction is not a branch
+     */
+    public static int getBranchOperandIndex(int opcode) {
+        return ADDRESS_OPERAND_INDEX[opcode];
+    }
+
+    /**
+     * @return opcode for textual command, or -1 if command is unknown
+     */
+    public static int getOpcode(String command) {
+        Integer opcode = OPCODES_BY_NAME.get(command);
+        return opcode == null ? -1 : opcode;
+    }
+}
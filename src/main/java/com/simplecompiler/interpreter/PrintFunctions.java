@@ -0,0 +1,165 @@
+package com.simplecompiler.interpreter;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Native [print] that neither boxes arguments nor allocates: it takes arguments as a range of ints,
+ * formats them into a reusable buffer and writes the buffer to the channel only when it is full and when the script is finished.<br>
+ * In capture mode nothing is written, printed values are kept in an int array and the end of every printed line in another one,
+ * that is the cheap way to check output in tests.
+ *
+ * @author Dmitry
+ */
+public class PrintFunctions implements Flushable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    //sign, 10 digits and separator
+    private static final int MAX_VALUE_LENGTH = 12;
+    private static final byte[] MIN_VALUE = Integer.toString(Integer.MIN_VALUE).getBytes();
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[10];
+    private int[] printedValues;
+    private int printedCount;
+    private int[] lineEnds;
+    private int linesCount;
+
+    public PrintFunctions(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PrintFunctions(WritableByteChannel channel, int bufferSize) {
+        if (bufferSize < MAX_VALUE_LENGTH) {
+            throw new IllegalArgumentException("Buffer size should be at least " + MAX_VALUE_LENGTH + ", but found [" + bufferSize + "]");
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    private PrintFunctions() {
+        this.channel = null;
+        this.buffer = null;
+        this.printedValues = new int[16];
+        this.lineEnds = new int[16];
+    }
+
+    /**
+     * Writes to the standard output directly, without System.out and its locks
+     */
+    public static PrintFunctions toStandardOutput() {
+        return new PrintFunctions(Channels.newChannel(new FileOutputStream(FileDescriptor.out)));
+    }
+
+    /**
+     * @return functions that keep printed values instead of writing them
+     */
+    public static PrintFunctions capture() {
+        return new PrintFunctions();
+    }
+
+    /**
+     * Prints arguments separated by space and the line feed
+     */
+    @NativeFunction(name = "print")
+    public void print(int[] values, int offset, int count) throws IOException {
+        if (channel == null) {
+            if (printedCount + count > printedValues.length) {
+                printedValues = Arrays.copyOf(printedValues, Math.max(printedValues.length * 2, printedCount + count));
+            }
+            System.arraycopy(values, offset, printedValues, printedCount, count);
+            printedCount += count;
+            if (linesCount == lineEnds.length) {
+                lineEnds = Arrays.copyOf(lineEnds, linesCount * 2);
+            }
+            lineEnds[linesCount++] = printedCount;
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < MAX_VALUE_LENGTH) {
+                writeBuffer();
+            }
+            if (i > 0) {
+                buffer.put((byte) ' ');
+            }
+            putInt(values[offset + i]);
+        }
+        if (!buffer.hasRemaining()) {
+            writeBuffer();
+        }
+        buffer.put((byte) '\n');
+    }
+
+    /**
+     * @return copy of values printed in capture mode
+     */
+    public int[] getPrintedValues() {
+        return Arrays.copyOf(printedValues, printedCount);
+    }
+
+    public int getPrintedCount() {
+        return printedCount;
+    }
+
+    /**
+     * @return for every [print] call in capture mode, index in printed values after its last value
+     */
+    public int[] getLineEnds() {
+        return Arrays.copyOf(lineEnds, linesCount);
+    }
+
+    /**
+     * @return values printed by one [print] call in capture mode
+     */
+    public int[] getPrintedLine(int line) {
+        if (line < 0 || line >= linesCount) {
+            throw new IllegalArgumentException("Line [" + line + "] is out of range [0, " + linesCount + ")");
+        }
+        return Arrays.copyOfRange(printedValues, line == 0 ? 0 : lineEnds[line - 1], lineEnds[line]);
+    }
+
+    public void clear() {
+        printedCount = 0;
+        linesCount = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (channel != null && buffer.position() > 0) {
+            writeBuffer();
+        }
+    }
+
+    private void putInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            buffer.put(MIN_VALUE);
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int position = digits.length;
+        do {
+            digits[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, position, digits.length - position);
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,80 @@
+package com.simplecompiler.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prints CompiledProgram in the textual bytecode format, the same that is accepted by BytecodeLoader.<br>
+ * Branch targets that are not functions get generated labels [L_address].
+ *
+ * @author Dmitry
+ */
+public class ProgramDisassembler {
+
+    public String disassemble(CompiledProgram program) {
+        int[] code = program.getCode();
+        Map<Integer, String> labels = new HashMap<>();
+        for (Map.Entry<String, Integer> function : program.getFunctions().entrySet()) {
+            labels.put(function.getValue(), function.getKey());
+        }
+
+        for (int ip = 0; ip < code.length; ip += 1 + Opcodes.getOperandsCount(code[ip])) {
+            int branchOperandIndex = Opcodes.getBranchOperandIndex(code[ip]);
+            if (branchOperandIndex != -1) {
+                int target = code[ip + 1 + branchOperandIndex];
+                if (!labels.containsKey(target)) {
+                    labels.put(target, "L_" + target);
+                }
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if (program.getGlobalVarCount() > 0) {
+            sb.append("$global-var-count ").append(program.getGlobalVarCount()).append("\n");
+        }
+
+        for (int ip = 0; ip < code.length; ip += 1 + Opcodes.getOperandsCount(code[ip])) {
+            if (labels.containsKey(ip)) {
+                if (Opcodes.isEnter(code[ip]) && sb.length() > 0) {
+                    sb.append("\n");
+                }
+                sb.append("label ").append(labels.get(ip)).append("\n");
+            }
+            appendInstruction(sb, program, code, ip, labels);
+            sb.append("\n");
+        }
+        for (Map.Entry<Integer, String> label : labels.entrySet()) {
+            if (label.getKey() == code.length) {
+                sb.append("label ").append(label.getValue()).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    private void appendInstruction(StringBuilder sb, CompiledProgram program, int[] code, int ip, Map<Integer, String> labels) {
+        int opcode = code[ip];
+        sb.append(Opcodes.getName(opcode));
+        if (opcode == Opcodes.CALL) {
+            sb.append(" ").append(labels.get(code[ip + 1])).append(" ").append(code[ip + 2]);
+            return;
+        }
+        if (opcode == Opcodes.TAIL_CALL) {
+            sb.append(" ").append(labels.get(code[ip + 1])).append(" ").append(code[ip + 2]).append(" ").append(code[ip + 3]);
+            return;
+        }
+        if (opcode == Opcodes.CALL_NATIVE) {
+            sb.append(" ").append(program.getNativeFunctionNames()[code[ip + 1]]).append(" ").append(code[ip + 2]);
+            return;
+        }
+
+        int branchOperandIndex = Opcodes.getBranchOperandIndex(opcode);
+        for (int i = 0; i < Opcodes.getOperandsCount(opcode); i++) {
+            sb.append(" ");
+            if (i == branchOperandIndex) {
+                sb.append(labels.get(code[ip + 1 + i]));
+            } else {
+                sb.append(code[ip + 1 + i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.simplecompiler.interpreter;
+
+/**
+ * Common contract of the execution backends: Interpreter and JvmExecutor
+ *
+ * @author Dmitry
+ */
+public interface ProgramExecutor {
+
+    public void execute(String bytecodeString);
+
+    public void execute(CompiledProgram program);
+
+    public NativeFunctionManager getNativeFunctionManager();
+}
@@ -0,0 +1,53 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.interpreter.NativeFunctionManager.Function;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binds native functions of CompiledProgram before execution.<br>
+ * Native functions are bound once by name, so executors invoke them by index without lookups.
+ * Unknown functions and arity mismatches of native calls are reported before any code runs.
+ * Script calls do not depend on registered functions, they are checked by BytecodeVerifier once per program.
+ *
+ * @author Dmitry
+ */
+public class ProgramLinker {
+
+    /**
+     * Program should be verified already, so instructions can be walked without checks
+     *
+     * @return native functions bound in the order of CompiledProgram.getNativeFunctionNames()
+     */
+    public Function[] link(CompiledProgram program, NativeFunctionManager nativeFunctionManager) {
+        String[] nativeFunctionNames = program.getNativeFunctionNames();
+        Function[] nativeFunctions = new Function[nativeFunctionNames.length];
+        for (int i = 0; i < nativeFunctionNames.length; i++) {
+            nativeFunctions[i] = nativeFunctionManager.findFunction(nativeFunctionNames[i]);
+            if (nativeFunctions[i] == null) {
+                throw new IllegalArgumentException("Cannot find function [" + nativeFunctionNames[i] + "]");
+            }
+        }
+
+        int[] code = program.getCode();
+        Map<Integer, String> functionNames = new HashMap<>();
+        for (Map.Entry<String, Integer> function : program.getFunctions().entrySet()) {
+            functionNames.put(function.getValue(), function.getKey());
+        }
+
+        String currentFunction = null;
+        for (int ip = 0; ip < code.length; ip += 1 + Opcodes.getOperandsCount(code[ip])) {
+            if (functionNames.containsKey(ip)) {
+                currentFunction = functionNames.get(ip);
+            }
+
+            if (code[ip] == Opcodes.CALL_NATIVE) {
+                Function function = nativeFunctions[code[ip + 1]];
+                if (function.argsCount != -1 && function.argsCount != code[ip + 2]) {
+                    throw new IllegalArgumentException("Function [" + function.name + "] expects [" + function.argsCount + "] arguments, but called with [" + code[ip + 2] + "] in function [" + currentFunction + "]");
+                }
+            }
+        }
+        return nativeFunctions;
+    }
+}
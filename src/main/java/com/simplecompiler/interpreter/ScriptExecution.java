@@ -0,0 +1,86 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.interpreter.NativeFunctionManager.Function;
+
+/**
+ * One execution of the program that runs in slices: INIT_BLOCK, then main.<br>
+ * Every slice gets a budget of function entries and branches, when it runs out the execution is suspended
+ * and all its state stays in ExecutionState until the next resume, possibly on another thread.
+ * Execution should not be resumed from several threads at the same time. Execution that threw an exception is finished.
+ *
+ * @author Dmitry
+ */
+public class ScriptExecution {
+
+    private final Interpreter interpreter;
+    private final CompiledProgram program;
+    private final Function[] nativeFunctions;
+    private final int[] frameSizes;
+    private final ExecutionState executionState;
+    private final int initBlockAddress;
+    private final int mainAddress;
+    private int currentFunctionAddress = -1;
+    private boolean finished;
+
+    ScriptExecution(Interpreter interpreter, CompiledProgram program, Function[] nativeFunctions, int[] frameSizes, ExecutionState executionState) {
+        this.interpreter = interpreter;
+        this.program = program;
+        this.nativeFunctions = nativeFunctions;
+        this.frameSizes = frameSizes;
+        this.executionState = executionState;
+        this.initBlockAddress = program.getFunctionAddress("INIT_BLOCK");
+        this.mainAddress = program.getFunctionAddress("main");
+    }
+
+    /**
+     * Runs the script until it finishes or until the budget runs out.
+     * Integer.MAX_VALUE means no limit, such slice always runs to the end
+     *
+     * @return true if the script is finished
+     */
+    public boolean resume(int budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Budget should be positive, but found [" + budget + "]");
+        }
+        if (finished) {
+            throw new IllegalStateException("Execution is already finished");
+        }
+
+        executionState.budget = budget;
+        executionState.preemptible = budget != Integer.MAX_VALUE;
+        boolean suspended = false;
+        try {
+            while (true) {
+                if (currentFunctionAddress == -1) {
+                    currentFunctionAddress = initBlockAddress != -1 ? initBlockAddress : mainAddress;
+                    interpreter.enterTopLevelFunction(executionState, program, currentFunctionAddress);
+                }
+                interpreter.executeBytecode(executionState, program, nativeFunctions, frameSizes);
+                if (executionState.ip != -1) {
+                    suspended = true;
+                    return false;
+                }
+
+                if (currentFunctionAddress == mainAddress) {
+                    return true;
+                }
+                //memoized functions could read global variables before they were initialized
+                for (MemoCache memoCache : executionState.memoCaches) {
+                    memoCache.clear();
+                }
+                currentFunctionAddress = mainAddress;
+                interpreter.enterTopLevelFunction(executionState, program, currentFunctionAddress);
+            }
+        } finally {
+            //failed script cannot be resumed, output printed before the error is flushed as well
+            if (!suspended) {
+                finished = true;
+                interpreter.getNativeFunctionManager().flush();
+            }
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
@@ -0,0 +1,201 @@
+package com.simplecompiler.interpreter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExecutorService that starts a new thread for every task, virtual thread when the JVM supports them (Java 21+).<br>
+ * Native functions of scripts may block, for example on IO: a blocked virtual thread does not hold a platform thread.
+ * On older JVMs every task gets its own platform thread, it still works, but blocked scripts cost a platform thread each.<br>
+ * Number of running tasks is limited: submit blocks the caller while the limit is reached,
+ * so a burst of submissions waits instead of creating unbounded number of threads and execution states.
+ *
+ * @author Dmitry
+ */
+public class ScriptExecutorService extends AbstractExecutorService {
+
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+    private final Set<Thread> threads = new HashSet<>();
+    private boolean shutdown;
+
+    /**
+     * @param maxRunningTasks maximum number of tasks that run at the same time
+     */
+    public ScriptExecutorService(int maxRunningTasks) {
+        this(maxRunningTasks, createThreadFactory());
+    }
+
+    public ScriptExecutorService(int maxRunningTasks, ThreadFactory threadFactory) {
+        if (maxRunningTasks <= 0) {
+            throw new IllegalArgumentException("Maximum number of running tasks should be positive, but found [" + maxRunningTasks + "]");
+        }
+        this.threadFactory = threadFactory;
+        this.permits = new Semaphore(maxRunningTasks);
+    }
+
+    /**
+     * @return factory of virtual threads if the JVM supports them, otherwise factory of daemon platform threads
+     */
+    public static ThreadFactory createThreadFactory() {
+        try {
+            //Thread.ofVirtual().factory(), reflection keeps the code compatible with old JVMs
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException ex) {
+            return new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "script-executor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+        }
+    }
+
+    /**
+     * Executes program in a new Interpreter with the native functions object, every run has its own ExecutionState
+     *
+     * @return future of the native functions object, it is the way to collect output of the run
+     */
+    public <T> Future<T> submit(final CompiledProgram program, final T nativeFunctions) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() {
+                Interpreter interpreter = new Interpreter();
+                interpreter.getNativeFunctionManager().registerFunctions(nativeFunctions);
+                interpreter.execute(program);
+                return nativeFunctions;
+            }
+        });
+    }
+
+    /**
+     * Waits while the limit of running tasks is reached, then starts the task in a new thread
+     *
+     * @throws RejectedExecutionException if the service is shut down, the thread factory does not create a thread
+     * or the caller is interrupted while waiting
+     */
+    @Override
+    public void execute(final Runnable command) {
+        if (isShutdown()) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a free slot", ex);
+        }
+
+        Thread thread = null;
+        boolean started = false;
+        try {
+            thread = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        command.run();
+                    } finally {
+                        taskFinished(Thread.currentThread());
+                    }
+                }
+            });
+            if (thread == null) {
+                throw new RejectedExecutionException("Thread factory did not create a thread");
+            }
+            synchronized (threads) {
+                if (shutdown) {
+                    throw new RejectedExecutionException("Executor is shut down");
+                }
+                threads.add(thread);
+            }
+            thread.start();
+            started = true;
+        } finally {
+            //task never runs, so it does not release its slot itself
+            if (!started) {
+                if (thread != null) {
+                    synchronized (threads) {
+                        threads.remove(thread);
+                        threads.notifyAll();
+                    }
+                }
+                permits.release();
+            }
+        }
+    }
+
+    private void taskFinished(Thread thread) {
+        synchronized (threads) {
+            threads.remove(thread);
+            threads.notifyAll();
+        }
+        permits.release();
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (threads) {
+            shutdown = true;
+            threads.notifyAll();
+        }
+    }
+
+    /**
+     * Interrupts running tasks, there are never queued tasks: waiting submissions are blocked in their callers
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Thread> runningThreads;
+        synchronized (threads) {
+            shutdown = true;
+            threads.notifyAll();
+            runningThreads = new ArrayList<>(threads);
+        }
+        for (Thread thread : runningThreads) {
+            thread.interrupt();
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        synchronized (threads) {
+            return shutdown;
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        synchronized (threads) {
+            return shutdown && threads.isEmpty();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (threads) {
+            while (!shutdown || !threads.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(threads, remaining);
+            }
+            return true;
+        }
+    }
+}
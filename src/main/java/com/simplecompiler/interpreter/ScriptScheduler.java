@@ -0,0 +1,173 @@
+package com.simplecompiler.interpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time slices many ScriptExecutions over a fixed number of worker threads.<br>
+ * Worker takes an execution from the queue, resumes it with the slice budget and puts it back if it is not finished,
+ * so a long running script never holds a thread for more than one slice.<br>
+ * Queue is ordered by virtual time (stride scheduling): every slice advances virtual time of the execution by STRIDE / weight,
+ * execution with the least virtual time runs next. With equal weights this is round robin, execution with twice the weight
+ * gets twice as many slices. New execution starts at the current virtual time, so it waits for at most one slice
+ * of every queued execution regardless of how long they already run.
+ *
+ * @author Dmitry
+ */
+public class ScriptScheduler {
+
+    public static final int DEFAULT_SLICE_BUDGET = 10000;
+    public static final int DEFAULT_WEIGHT = 16;
+    public static final int MAX_WEIGHT = 1024;
+    private static final long STRIDE = MAX_WEIGHT;
+
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final int sliceBudget;
+    private final AtomicLong virtualTime = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public ScriptScheduler(int threadsCount) {
+        this(threadsCount, DEFAULT_SLICE_BUDGET);
+    }
+
+    /**
+     * @param sliceBudget budget of function entries and branches that an execution gets per slice
+     */
+    public ScriptScheduler(int threadsCount, int sliceBudget) {
+        if (threadsCount <= 0 || sliceBudget <= 0 || sliceBudget == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Wrong scheduler parameters, threads [" + threadsCount + "] slice budget [" + sliceBudget + "]");
+        }
+        this.sliceBudget = sliceBudget;
+        for (int i = 0; i < threadsCount; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWorker();
+                }
+            }, "script-scheduler-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public Future<ScriptExecution> submit(ScriptExecution execution) {
+        return submit(execution, DEFAULT_WEIGHT);
+    }
+
+    /**
+     * @param weight share of worker time relative to other executions, from 1 to MAX_WEIGHT
+     * @return future that is done when the script is finished, cancel removes the execution from the scheduler
+     */
+    public Future<ScriptExecution> submit(ScriptExecution execution, int weight) {
+        if (weight < 1 || weight > MAX_WEIGHT) {
+            throw new IllegalArgumentException("Weight should be from 1 to " + MAX_WEIGHT + ", but found [" + weight + "]");
+        }
+        Task task = new Task(execution, weight, virtualTime.get(), sequence.getAndIncrement());
+        queue.add(task);
+        return task;
+    }
+
+    /**
+     * Stops workers after their current slices, executions that are not finished are cancelled
+     */
+    public void shutdown() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        List<Task> tasks = new ArrayList<>();
+        queue.drainTo(tasks);
+        for (Task task : tasks) {
+            task.cancel(false);
+        }
+    }
+
+    private void runWorker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (task.isCancelled()) {
+                continue;
+            }
+            advanceVirtualTime(task.virtualTime);
+
+            boolean finished;
+            try {
+                finished = task.execution.resume(sliceBudget);
+            } catch (RuntimeException | Error ex) {
+                task.fail(ex);
+                continue;
+            }
+            if (finished) {
+                task.complete();
+            } else {
+                task.virtualTime += STRIDE / task.weight;
+                task.sequence = sequence.getAndIncrement();
+                queue.add(task);
+            }
+        }
+    }
+
+    private void advanceVirtualTime(long time) {
+        long current = virtualTime.get();
+        while (time > current && !virtualTime.compareAndSet(current, time)) {
+            current = virtualTime.get();
+        }
+    }
+
+    /**
+     * Future of one execution, it is completed by the worker and never run itself
+     */
+    private static class Task extends FutureTask<ScriptExecution> implements Comparable<Task> {
+
+        private static final Runnable NOTHING = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        final ScriptExecution execution;
+        final int weight;
+        long virtualTime;
+        long sequence;
+
+        Task(ScriptExecution execution, int weight, long virtualTime, long sequence) {
+            super(NOTHING, null);
+            this.execution = execution;
+            this.weight = weight;
+            this.virtualTime = virtualTime;
+            this.sequence = sequence;
+        }
+
+        void complete() {
+            set(execution);
+        }
+
+        void fail(Throwable ex) {
+            setException(ex);
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int result = Long.compare(virtualTime, other.virtualTime);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
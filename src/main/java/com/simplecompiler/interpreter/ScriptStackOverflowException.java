@@ -0,0 +1,25 @@
+package com.simplecompiler.interpreter;
+
+/**
+ * Thrown when script needs more stack than maximum size of the stack of ExecutionState
+ *
+ * @author Dmitry
+ */
+public class ScriptStackOverflowException extends IllegalStateException {
+
+    private final String functionName;
+
+    public ScriptStackOverflowException(String functionName, int maxStackSize) {
+        super(functionName == null
+                ? "Stack overflow, maximum stack size is [" + maxStackSize + "]"
+                : "Stack overflow in function [" + functionName + "], maximum stack size is [" + maxStackSize + "]");
+        this.functionName = functionName;
+    }
+
+    /**
+     * @return function that could not enter, or null if stack overflowed outside of functions
+     */
+    public String getFunctionName() {
+        return functionName;
+    }
+}
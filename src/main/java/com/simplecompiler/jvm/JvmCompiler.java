@@ -0,0 +1,1029 @@
+package com.simplecompiler.jvm;
+
+import com.simplecompiler.interpreter.CompiledProgram;
+import com.simplecompiler.interpreter.MemoCache;
+import com.simplecompiler.interpreter.NativeFunctionManager;
+import com.simplecompiler.interpreter.NativeFunctionManager.Function;
+import com.simplecompiler.interpreter.Opcodes;
+import com.simplecompiler.interpreter.ProgramLinker;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Translates decoded stack machine program to a JVM class.<br>
+ * Every script function becomes static method that takes its arguments as ints and returns accumulator on leave.
+ * Accumulator lives in a jvm local variable, values pushed by save live on the jvm operand stack,
+ * so script calls map to invokestatic with arguments already in place.<br>
+ * Function that can read accumulator before writing it receives accumulator of the caller as additional last parameter,
+ * this keeps results identical to the Interpreter.<br>
+ * Self tail call is a jump to the start of the body. Functions that call each other in tail position are compiled to one group method
+ * with a switch over their entry points, so these calls are jumps too and do not grow the jvm stack; every function of the group
+ * keeps its own method that enters the group. Depth of other recursion is limited by the stack of the jvm thread.<br>
+ * Memoized function looks up its arguments in a MemoCache static field on entry and stores the result before return,
+ * caches are created anew by every run as in the Interpreter.
+ *
+ * @author Dmitry
+ */
+public class JvmCompiler {
+
+    private static final AtomicInteger classCounter = new AtomicInteger();
+    private static final String RUNTIME_CLASS = Type.getInternalName(JvmRuntime.class);
+    private static final String FUNCTION_DESCRIPTOR = Type.getDescriptor(Function.class);
+    private static final String METHOD_HANDLE_DESCRIPTOR = "Ljava/lang/invoke/MethodHandle;";
+    private static final String MEMO_CACHE_CLASS = Type.getInternalName(MemoCache.class);
+    private static final String MEMO_CACHE_DESCRIPTOR = Type.getDescriptor(MemoCache.class);
+
+    public JvmProgram compile(CompiledProgram program, NativeFunctionManager nativeFunctionManager) {
+        //call sites and the code are validated before any class generation
+        program.getFrameSizes();
+        NativeLinker nativeLinker = new NativeLinker(program, nativeFunctionManager);
+        int[] code = program.getCode();
+        List<FunctionInfo> functions = collectFunctions(program);
+        Map<Integer, FunctionInfo> functionsByAddress = new HashMap<>();
+        for (FunctionInfo function : functions) {
+            functionsByAddress.put(function.address, function);
+        }
+        computeIncomingAccumulatorUsage(code, functions, functionsByAddress);
+
+        String className = "com/simplecompiler/jvm/generated/Script" + classCounter.incrementAndGet();
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(V1_7, ACC_PUBLIC | ACC_SUPER | ACC_FINAL, className, null, "java/lang/Object", null);
+
+        List<TailCallGroup> groups = collectTailCallGroups(code, functions, functionsByAddress);
+        for (TailCallGroup group : groups) {
+            generateTailCallGroup(classWriter, className, code, group, functionsByAddress, nativeLinker);
+        }
+        List<FunctionInfo> memoFunctions = new ArrayList<>();
+        for (FunctionInfo function : functions) {
+            if (function.group == null) {
+                generateFunction(classWriter, className, code, function, functionsByAddress, nativeLinker);
+            } else {
+                generateGroupEntry(classWriter, className, function);
+            }
+            if (function.memoIndex != -1) {
+                classWriter.visitField(ACC_PUBLIC | ACC_STATIC, "memo" + function.memoIndex, MEMO_CACHE_DESCRIPTOR, null, null).visitEnd();
+                memoFunctions.add(function);
+            }
+        }
+        nativeLinker.generateFields(classWriter);
+
+        FunctionInfo initBlock = functionsByAddress.get(program.getFunctionAddress("INIT_BLOCK"));
+        FunctionInfo main = functionsByAddress.get(program.getFunctionAddress("main"));
+        if (main == null) {
+            throw new IllegalArgumentException("Bytecode does not contain 'main' function");
+        }
+        generateRunMethod(classWriter, className, program.getGlobalVarCount(), initBlock, main, memoFunctions);
+        classWriter.visitEnd();
+
+        ScriptClassLoader classLoader = new ScriptClassLoader(nativeLinker.getOwnerClassLoaders());
+        Class scriptClass = classLoader.defineScriptClass(className.replace('/', '.'), classWriter.toByteArray());
+        nativeLinker.bindFields(scriptClass);
+        return new JvmProgram(scriptClass);
+    }
+
+    private List<FunctionInfo> collectFunctions(CompiledProgram program) {
+        int[] code = program.getCode();
+        List<FunctionInfo> functions = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : program.getFunctions().entrySet()) {
+            FunctionInfo function = new FunctionInfo();
+            function.name = entry.getKey();
+            function.address = entry.getValue();
+            function.localVarsCount = code[function.address + 1];
+            function.argsCount = code[function.address + 2];
+            function.memoIndex = code[function.address] == Opcodes.ENTER_MEMO ? code[function.address + 3] : -1;
+            functions.add(function);
+        }
+
+        int[] addresses = new int[functions.size()];
+        for (int i = 0; i < functions.size(); i++) {
+            addresses[i] = functions.get(i).address;
+        }
+        Arrays.sort(addresses);
+        for (int i = 0; i < functions.size(); i++) {
+            FunctionInfo function = functions.get(i);
+            function.methodName = "f" + i;
+            int position = Arrays.binarySearch(addresses, function.address);
+            function.endAddress = position + 1 < addresses.length ? addresses[position + 1] : code.length;
+        }
+        return functions;
+    }
+
+    /**
+     * Interpreter does not reset accumulator on call, so a function that reads it before the first write observes value of the caller.
+     */
+    private void computeIncomingAccumulatorUsage(int[] code, List<FunctionInfo> functions, Map<Integer, FunctionInfo> functionsByAddress) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (FunctionInfo function : functions) {
+                if (!function.needsIncomingAccumulator && readsAccumulatorBeforeWrite(code, function, functionsByAddress)) {
+                    function.needsIncomingAccumulator = true;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private boolean readsAccumulatorBeforeWrite(int[] code, FunctionInfo function, Map<Integer, FunctionInfo> functionsByAddress) {
+        //only unconditional branches are followed, because branch-false already reads accumulator
+        Set<Integer> visited = new HashSet<>();
+        int ip = function.address;
+        while (ip < function.endAddress && visited.add(ip)) {
+            int opcode = code[ip];
+            switch (opcode) {
+                case Opcodes.LOAD_LONG:
+                case Opcodes.LOAD_LOCAL_VAR:
+                case Opcodes.LOAD_GLOBAL_VAR:
+                case Opcodes.LOAD_ARG:
+                case Opcodes.PUSH_LONG:
+                case Opcodes.PUSH_ARG:
+                case Opcodes.PUSH_LOCAL_VAR:
+                case Opcodes.PUSH_GLOBAL_VAR:
+                case Opcodes.LOAD_ARG_ADD_LONG:
+                case Opcodes.LOAD_ARG_SUB_LONG:
+                    return false;
+                case Opcodes.CALL:
+                case Opcodes.TAIL_CALL: {
+                    FunctionInfo callee = functionsByAddress.get(code[ip + 1]);
+                    return callee != null && callee.needsIncomingAccumulator;
+                }
+                case Opcodes.CALL_NATIVE:
+                case Opcodes.ENTER:
+                case Opcodes.ENTER_MEMO:
+                    ip += 1 + Opcodes.getOperandsCount(opcode);
+                    break;
+                case Opcodes.BRANCH:
+                    ip = code[ip + 1];
+                    break;
+                default:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Functions are in one group if each of them reaches the other by tail calls, self tail calls are not counted
+     */
+    private List<TailCallGroup> collectTailCallGroups(int[] code, List<FunctionInfo> functions, Map<Integer, FunctionInfo> functionsByAddress) {
+        Map<FunctionInfo, Set<FunctionInfo>> tailCallees = new HashMap<>();
+        for (FunctionInfo function : functions) {
+            Set<FunctionInfo> callees = new HashSet<>();
+            for (int ip = function.address; ip < function.endAddress; ip += 1 + Opcodes.getOperandsCount(code[ip])) {
+                if (code[ip] == Opcodes.TAIL_CALL && code[ip + 1] != function.address) {
+                    callees.add(functionsByAddress.get(code[ip + 1]));
+                }
+            }
+            tailCallees.put(function, callees);
+        }
+        Map<FunctionInfo, Set<FunctionInfo>> reachable = new HashMap<>();
+        for (FunctionInfo function : functions) {
+            Set<FunctionInfo> visited = new HashSet<>();
+            List<FunctionInfo> stack = new ArrayList<>(tailCallees.get(function));
+            while (!stack.isEmpty()) {
+                FunctionInfo callee = stack.remove(stack.size() - 1);
+                if (visited.add(callee)) {
+                    stack.addAll(tailCallees.get(callee));
+                }
+            }
+            reachable.put(function, visited);
+        }
+
+        List<TailCallGroup> groups = new ArrayList<>();
+        for (FunctionInfo function : functions) {
+            if (function.group != null || !reachable.get(function).contains(function)) {
+                continue;
+            }
+            TailCallGroup group = new TailCallGroup();
+            group.methodName = "t" + groups.size();
+            for (FunctionInfo member : functions) {
+                if (reachable.get(function).contains(member) && reachable.get(member).contains(function)) {
+                    member.group = group;
+                    member.groupIndex = group.members.size();
+                    group.members.add(member);
+                    group.maxArgsCount = Math.max(group.maxArgsCount, member.argsCount);
+                }
+            }
+            //index of the entry, arguments, accumulator of the caller
+            for (FunctionInfo member : group.members) {
+                member.allocateVars(1, group.maxArgsCount + 1, group.maxArgsCount + 2);
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    private void generateFunction(ClassWriter classWriter, String className, int[] code, FunctionInfo function, Map<Integer, FunctionInfo> functionsByAddress, NativeLinker nativeLinker) {
+        MethodVisitor mv = classWriter.visitMethod(ACC_PUBLIC | ACC_STATIC, function.methodName, function.getDescriptor(), null, null);
+        mv.visitCode();
+        function.allocateVars(0, function.argsCount, function.argsCount + (function.needsIncomingAccumulator ? 1 : 0));
+        generateBody(mv, className, code, function, functionsByAddress, nativeLinker);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void generateTailCallGroup(ClassWriter classWriter, String className, int[] code, TailCallGroup group, Map<Integer, FunctionInfo> functionsByAddress, NativeLinker nativeLinker) {
+        MethodVisitor mv = classWriter.visitMethod(ACC_PUBLIC | ACC_STATIC, group.methodName, group.getDescriptor(), null, null);
+        mv.visitCode();
+        Label[] entryLabels = new Label[group.members.size()];
+        for (int i = 0; i < entryLabels.length; i++) {
+            entryLabels[i] = group.members.get(i).entryLabel;
+        }
+        //index always comes from an entry method, so default case is never taken
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitTableSwitchInsn(0, entryLabels.length - 1, entryLabels[0], entryLabels);
+        for (FunctionInfo member : group.members) {
+            generateBody(mv, className, code, member, functionsByAddress, nativeLinker);
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Method of a grouped function passes its index and arguments to the group method
+     */
+    private void generateGroupEntry(ClassWriter classWriter, String className, FunctionInfo function) {
+        MethodVisitor mv = classWriter.visitMethod(ACC_PUBLIC | ACC_STATIC, function.methodName, function.getDescriptor(), null, null);
+        mv.visitCode();
+        TailCallGroup group = function.group;
+        pushInt(mv, function.groupIndex);
+        for (int i = 0; i < group.maxArgsCount; i++) {
+            if (i < function.argsCount) {
+                mv.visitVarInsn(ILOAD, i);
+            } else {
+                mv.visitInsn(ICONST_0);
+            }
+        }
+        if (function.needsIncomingAccumulator) {
+            mv.visitVarInsn(ILOAD, function.argsCount);
+        } else {
+            mv.visitInsn(ICONST_0);
+        }
+        mv.visitMethodInsn(INVOKESTATIC, className, group.methodName, group.getDescriptor(), false);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void generateBody(MethodVisitor mv, String className, int[] code, FunctionInfo function, Map<Integer, FunctionInfo> functionsByAddress, NativeLinker nativeLinker) {
+        int accumulatorVar = function.accumulatorVar;
+        int tmpVar = function.tmpVar;
+        int memoArgsVar = function.memoArgsVar;
+        int localVarsBase = function.localVarsBase;
+        int nativeArgsBase = function.nativeArgsBase;
+
+        mv.visitLabel(function.entryLabel);
+        if (function.needsIncomingAccumulator) {
+            mv.visitVarInsn(ILOAD, function.incomingAccumulatorVar);
+        } else {
+            mv.visitInsn(ICONST_0);
+        }
+        mv.visitVarInsn(ISTORE, accumulatorVar);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, tmpVar);
+        for (int i = 0; i < function.localVarsCount; i++) {
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, localVarsBase + i);
+        }
+        if (function.memoIndex != -1) {
+            generateMemoLookup(mv, className, function, tmpVar, memoArgsVar);
+        }
+
+        //self tail call jumps here, locals and accumulator keep their values as in the Interpreter
+        mv.visitLabel(function.bodyLabel);
+
+        Map<Integer, Label> labels = new HashMap<>();
+        for (int ip = function.address; ip < function.endAddress; ip += 1 + Opcodes.getOperandsCount(code[ip])) {
+            int branchOperandIndex = Opcodes.getBranchOperandIndex(code[ip]);
+            if (branchOperandIndex != -1) {
+                int target = code[ip + 1 + branchOperandIndex];
+                if (target < function.address || target >= function.endAddress) {
+                    throw new IllegalArgumentException("Branch at [" + ip + "] leaves function [" + function.name + "]");
+                }
+                labels.put(target, new Label());
+            }
+        }
+
+        int ip = function.address;
+        while (ip < function.endAddress) {
+            Label label = labels.get(ip);
+            if (label != null) {
+                mv.visitLabel(label);
+            }
+
+            int opcode = code[ip];
+            switch (opcode) {
+                case Opcodes.ENTER:
+                case Opcodes.ENTER_MEMO:
+                    break;
+                case Opcodes.SAVE:
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    break;
+                case Opcodes.LOAD_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                case Opcodes.LOAD_ARG:
+                    mv.visitVarInsn(ILOAD, function.argsBase + function.argsCount - 1 - code[ip + 1]);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                case Opcodes.LOAD_LOCAL_VAR:
+                    mv.visitVarInsn(ILOAD, localVarsBase + code[ip + 1]);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                case Opcodes.STORE_LOCAL_VAR:
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitVarInsn(ISTORE, localVarsBase + code[ip + 1]);
+                    break;
+                case Opcodes.LOAD_GLOBAL_VAR:
+                    mv.visitFieldInsn(GETSTATIC, className, "g" + code[ip + 1], "I");
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                case Opcodes.STORE_GLOBAL_VAR:
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitFieldInsn(PUTSTATIC, className, "g" + code[ip + 1], "I");
+                    break;
+                case Opcodes.ADD:
+                    generateArithmetic(mv, IADD, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.SUB:
+                    generateArithmetic(mv, ISUB, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.MUL:
+                    generateArithmetic(mv, IMUL, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.DIV:
+                    generateArithmetic(mv, IDIV, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.BITAND:
+                    generateArithmetic(mv, IAND, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.BITOR:
+                    generateArithmetic(mv, IOR, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.BITXOR:
+                    generateArithmetic(mv, IXOR, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.LSHIFT:
+                    generateArithmetic(mv, ISHL, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.RSHIFT:
+                    generateArithmetic(mv, ISHR, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.URSHIFT:
+                    generateArithmetic(mv, IUSHR, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.LESS:
+                    generateComparison(mv, IF_ICMPGE, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.MORE:
+                    generateComparison(mv, IF_ICMPLE, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.EQ:
+                    generateComparison(mv, IF_ICMPNE, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.NEQ:
+                    generateComparison(mv, IF_ICMPEQ, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.ADD_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateArithmetic(mv, IADD, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.SUB_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateArithmetic(mv, ISUB, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.MUL_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateArithmetic(mv, IMUL, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.DIV_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateArithmetic(mv, IDIV, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.BITAND_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateArithmetic(mv, IAND, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.BITOR_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateArithmetic(mv, IOR, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.BITXOR_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateArithmetic(mv, IXOR, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.LSHIFT_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateArithmetic(mv, ISHL, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.RSHIFT_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateArithmetic(mv, ISHR, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.URSHIFT_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateArithmetic(mv, IUSHR, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.LESS_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateComparison(mv, IF_ICMPGE, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.MORE_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateComparison(mv, IF_ICMPLE, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.EQ_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateComparison(mv, IF_ICMPNE, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.NEQ_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    generateComparison(mv, IF_ICMPEQ, accumulatorVar, tmpVar);
+                    break;
+                case Opcodes.NOT: {
+                    Label falseLabel = new Label();
+                    Label endLabel = new Label();
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitJumpInsn(IFNE, falseLabel);
+                    mv.visitInsn(ICONST_1);
+                    mv.visitJumpInsn(GOTO, endLabel);
+                    mv.visitLabel(falseLabel);
+                    mv.visitInsn(ICONST_0);
+                    mv.visitLabel(endLabel);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                }
+                case Opcodes.AND:
+                case Opcodes.OR: {
+                    Label falseLabel = new Label();
+                    Label trueLabel = new Label();
+                    Label endLabel = new Label();
+                    mv.visitVarInsn(ISTORE, tmpVar);
+                    if (opcode == Opcodes.AND) {
+                        mv.visitVarInsn(ILOAD, accumulatorVar);
+                        mv.visitJumpInsn(IFEQ, falseLabel);
+                        mv.visitVarInsn(ILOAD, tmpVar);
+                        mv.visitJumpInsn(IFEQ, falseLabel);
+                    } else {
+                        mv.visitVarInsn(ILOAD, accumulatorVar);
+                        mv.visitJumpInsn(IFNE, trueLabel);
+                        mv.visitVarInsn(ILOAD, tmpVar);
+                        mv.visitJumpInsn(IFEQ, falseLabel);
+                    }
+                    mv.visitLabel(trueLabel);
+                    mv.visitInsn(ICONST_1);
+                    mv.visitJumpInsn(GOTO, endLabel);
+                    mv.visitLabel(falseLabel);
+                    mv.visitInsn(ICONST_0);
+                    mv.visitLabel(endLabel);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                }
+                case Opcodes.PUSH_LONG:
+                    pushInt(mv, code[ip + 1]);
+                    mv.visitInsn(DUP);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                case Opcodes.PUSH_ARG:
+                    mv.visitVarInsn(ILOAD, function.argsBase + function.argsCount - 1 - code[ip + 1]);
+                    mv.visitInsn(DUP);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                case Opcodes.PUSH_LOCAL_VAR:
+                    mv.visitVarInsn(ILOAD, localVarsBase + code[ip + 1]);
+                    mv.visitInsn(DUP);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                case Opcodes.PUSH_GLOBAL_VAR:
+                    mv.visitFieldInsn(GETSTATIC, className, "g" + code[ip + 1], "I");
+                    mv.visitInsn(DUP);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                case Opcodes.LOAD_ARG_ADD_LONG:
+                case Opcodes.LOAD_ARG_SUB_LONG:
+                    mv.visitVarInsn(ILOAD, function.argsBase + function.argsCount - 1 - code[ip + 1]);
+                    pushInt(mv, code[ip + 2]);
+                    mv.visitInsn(opcode == Opcodes.LOAD_ARG_ADD_LONG ? IADD : ISUB);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                case Opcodes.LESS_BRANCH_FALSE:
+                    generateComparison(mv, IF_ICMPGE, accumulatorVar, tmpVar);
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitJumpInsn(IFEQ, labels.get(code[ip + 1]));
+                    break;
+                case Opcodes.MORE_BRANCH_FALSE:
+                    generateComparison(mv, IF_ICMPLE, accumulatorVar, tmpVar);
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitJumpInsn(IFEQ, labels.get(code[ip + 1]));
+                    break;
+                case Opcodes.EQ_BRANCH_FALSE:
+                    generateComparison(mv, IF_ICMPNE, accumulatorVar, tmpVar);
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitJumpInsn(IFEQ, labels.get(code[ip + 1]));
+                    break;
+                case Opcodes.NEQ_BRANCH_FALSE:
+                    generateComparison(mv, IF_ICMPEQ, accumulatorVar, tmpVar);
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitJumpInsn(IFEQ, labels.get(code[ip + 1]));
+                    break;
+                case Opcodes.LESS_LONG_BRANCH_FALSE:
+                    pushInt(mv, code[ip + 1]);
+                    generateComparison(mv, IF_ICMPGE, accumulatorVar, tmpVar);
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitJumpInsn(IFEQ, labels.get(code[ip + 2]));
+                    break;
+                case Opcodes.MORE_LONG_BRANCH_FALSE:
+                    pushInt(mv, code[ip + 1]);
+                    generateComparison(mv, IF_ICMPLE, accumulatorVar, tmpVar);
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitJumpInsn(IFEQ, labels.get(code[ip + 2]));
+                    break;
+                case Opcodes.EQ_LONG_BRANCH_FALSE:
+                    pushInt(mv, code[ip + 1]);
+                    generateComparison(mv, IF_ICMPNE, accumulatorVar, tmpVar);
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitJumpInsn(IFEQ, labels.get(code[ip + 2]));
+                    break;
+                case Opcodes.NEQ_LONG_BRANCH_FALSE:
+                    pushInt(mv, code[ip + 1]);
+                    generateComparison(mv, IF_ICMPEQ, accumulatorVar, tmpVar);
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitJumpInsn(IFEQ, labels.get(code[ip + 2]));
+                    break;
+                case Opcodes.BRANCH:
+                    mv.visitJumpInsn(GOTO, labels.get(code[ip + 1]));
+                    break;
+                case Opcodes.BRANCH_FALSE:
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitJumpInsn(IFEQ, labels.get(code[ip + 1]));
+                    break;
+                case Opcodes.CALL: {
+                    FunctionInfo callee = functionsByAddress.get(code[ip + 1]);
+                    if (callee.needsIncomingAccumulator) {
+                        mv.visitVarInsn(ILOAD, accumulatorVar);
+                    }
+                    mv.visitMethodInsn(INVOKESTATIC, className, callee.methodName, callee.getDescriptor(), false);
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                    break;
+                }
+                case Opcodes.TAIL_CALL: {
+                    FunctionInfo callee = functionsByAddress.get(code[ip + 1]);
+                    if (callee == function) {
+                        //arguments are on the operand stack, the last one on top
+                        for (int i = function.argsCount - 1; i >= 0; i--) {
+                            mv.visitVarInsn(ISTORE, function.argsBase + i);
+                        }
+                        mv.visitJumpInsn(GOTO, function.bodyLabel);
+                    } else if (callee.group != null && callee.group == function.group) {
+                        for (int i = callee.argsCount - 1; i >= 0; i--) {
+                            mv.visitVarInsn(ISTORE, callee.argsBase + i);
+                        }
+                        if (callee.needsIncomingAccumulator) {
+                            mv.visitVarInsn(ILOAD, accumulatorVar);
+                            mv.visitVarInsn(ISTORE, callee.incomingAccumulatorVar);
+                        }
+                        mv.visitJumpInsn(GOTO, callee.entryLabel);
+                    } else {
+                        if (callee.needsIncomingAccumulator) {
+                            mv.visitVarInsn(ILOAD, accumulatorVar);
+                        }
+                        mv.visitMethodInsn(INVOKESTATIC, className, callee.methodName, callee.getDescriptor(), false);
+                        mv.visitInsn(IRETURN);
+                    }
+                    break;
+                }
+                case Opcodes.CALL_NATIVE:
+                    nativeLinker.generateCall(mv, className, code[ip + 1], code[ip + 2], accumulatorVar, nativeArgsBase);
+                    break;
+                case Opcodes.LEAVE:
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitInsn(IRETURN);
+                    break;
+                case Opcodes.LEAVE_MEMO:
+                    mv.visitFieldInsn(GETSTATIC, className, "memo" + function.memoIndex, MEMO_CACHE_DESCRIPTOR);
+                    mv.visitVarInsn(ALOAD, memoArgsVar);
+                    mv.visitInsn(ICONST_0);
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, MEMO_CACHE_CLASS, "put", "([III)V", false);
+                    mv.visitVarInsn(ILOAD, accumulatorVar);
+                    mv.visitInsn(IRETURN);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode [" + opcode + "] at [" + ip + "]");
+            }
+            ip += 1 + Opcodes.getOperandsCount(opcode);
+        }
+    }
+
+    /**
+     * Copies arguments to an int[] that is kept for the store on leave, returns cached result if arguments are found
+     */
+    private void generateMemoLookup(MethodVisitor mv, String className, FunctionInfo function, int tmpVar, int memoArgsVar) {
+        pushInt(mv, function.argsCount);
+        mv.visitIntInsn(NEWARRAY, T_INT);
+        for (int i = 0; i < function.argsCount; i++) {
+            mv.visitInsn(DUP);
+            pushInt(mv, i);
+            mv.visitVarInsn(ILOAD, function.argsBase + i);
+            mv.visitInsn(IASTORE);
+        }
+        mv.visitVarInsn(ASTORE, memoArgsVar);
+
+        Label missLabel = new Label();
+        mv.visitFieldInsn(GETSTATIC, className, "memo" + function.memoIndex, MEMO_CACHE_DESCRIPTOR);
+        mv.visitVarInsn(ALOAD, memoArgsVar);
+        mv.visitInsn(ICONST_0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, MEMO_CACHE_CLASS, "find", "([II)I", false);
+        mv.visitVarInsn(ISTORE, tmpVar);
+        mv.visitVarInsn(ILOAD, tmpVar);
+        mv.visitJumpInsn(IFLT, missLabel);
+        mv.visitFieldInsn(GETSTATIC, className, "memo" + function.memoIndex, MEMO_CACHE_DESCRIPTOR);
+        mv.visitVarInsn(ILOAD, tmpVar);
+        mv.visitMethodInsn(INVOKEVIRTUAL, MEMO_CACHE_CLASS, "getValue", "(I)I", false);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(missLabel);
+    }
+
+    private void generateArithmetic(MethodVisitor mv, int jvmOpcode, int accumulatorVar, int tmpVar) {
+        mv.visitVarInsn(ISTORE, tmpVar);
+        mv.visitVarInsn(ILOAD, accumulatorVar);
+        mv.visitVarInsn(ILOAD, tmpVar);
+        mv.visitInsn(jvmOpcode);
+        mv.visitVarInsn(ISTORE, accumulatorVar);
+    }
+
+    /**
+     * @param inverseJump jump that is taken when comparison is false
+     */
+    private void generateComparison(MethodVisitor mv, int inverseJump, int accumulatorVar, int tmpVar) {
+        Label falseLabel = new Label();
+        Label endLabel = new Label();
+        mv.visitVarInsn(ISTORE, tmpVar);
+        mv.visitVarInsn(ILOAD, accumulatorVar);
+        mv.visitVarInsn(ILOAD, tmpVar);
+        mv.visitJumpInsn(inverseJump, falseLabel);
+        mv.visitInsn(ICONST_1);
+        mv.visitJumpInsn(GOTO, endLabel);
+        mv.visitLabel(falseLabel);
+        mv.visitInsn(ICONST_0);
+        mv.visitLabel(endLabel);
+        mv.visitVarInsn(ISTORE, accumulatorVar);
+    }
+
+    private void generateRunMethod(ClassWriter classWriter, String className, int globalVarCount, FunctionInfo initBlock, FunctionInfo main, List<FunctionInfo> memoFunctions) {
+        MethodVisitor mv = classWriter.visitMethod(ACC_PUBLIC | ACC_STATIC, JvmProgram.RUN_METHOD, "()V", null, null);
+        mv.visitCode();
+        //every run starts from zero globals as the Interpreter does
+        for (int i = 0; i < globalVarCount; i++) {
+            mv.visitInsn(ICONST_0);
+            mv.visitFieldInsn(PUTSTATIC, className, "g" + i, "I");
+        }
+        for (FunctionInfo function : memoFunctions) {
+            mv.visitTypeInsn(NEW, MEMO_CACHE_CLASS);
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn(function.name);
+            pushInt(mv, function.argsCount);
+            pushInt(mv, MemoCache.DEFAULT_SIZE);
+            mv.visitMethodInsn(INVOKESPECIAL, MEMO_CACHE_CLASS, "<init>", "(Ljava/lang/String;II)V", false);
+            mv.visitFieldInsn(PUTSTATIC, className, "memo" + function.memoIndex, MEMO_CACHE_DESCRIPTOR);
+        }
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 0);
+        if (initBlock != null) {
+            generateTopLevelCall(mv, className, initBlock);
+        }
+        generateTopLevelCall(mv, className, main);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void generateTopLevelCall(MethodVisitor mv, String className, FunctionInfo function) {
+        for (int i = 0; i < function.argsCount; i++) {
+            mv.visitInsn(ICONST_0);
+        }
+        if (function.needsIncomingAccumulator) {
+            mv.visitVarInsn(ILOAD, 0);
+        }
+        mv.visitMethodInsn(INVOKESTATIC, className, function.methodName, function.getDescriptor(), false);
+        mv.visitVarInsn(ISTORE, 0);
+    }
+
+    static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static class FunctionInfo {
+
+        String name;
+        String methodName;
+        int address;
+        int endAddress;
+        int localVarsCount;
+        int argsCount;
+        //index of MemoCache field, -1 for usual function
+        int memoIndex;
+        boolean needsIncomingAccumulator;
+        TailCallGroup group;
+        int groupIndex;
+        final Label entryLabel = new Label();
+        final Label bodyLabel = new Label();
+        //jvm local variables of the body
+        int argsBase;
+        int incomingAccumulatorVar;
+        int accumulatorVar;
+        int tmpVar;
+        int memoArgsVar;
+        int localVarsBase;
+        int nativeArgsBase;
+
+        /**
+         * @param firstFreeVar first jvm local variable after parameters of the method
+         */
+        void allocateVars(int argsBase, int incomingAccumulatorVar, int firstFreeVar) {
+            this.argsBase = argsBase;
+            this.incomingAccumulatorVar = incomingAccumulatorVar;
+            accumulatorVar = firstFreeVar;
+            tmpVar = firstFreeVar + 1;
+            memoArgsVar = firstFreeVar + 2;
+            localVarsBase = firstFreeVar + (memoIndex != -1 ? 3 : 2);
+            nativeArgsBase = localVarsBase + localVarsCount;
+        }
+
+        String getDescriptor() {
+            StringBuilder sb = new StringBuilder("(");
+            for (int i = 0; i < argsCount; i++) {
+                sb.append('I');
+            }
+            if (needsIncomingAccumulator) {
+                sb.append('I');
+            }
+            return sb.append(")I").toString();
+        }
+    }
+
+    /**
+     * Functions that call each other in tail position, compiled to one method
+     */
+    private static class TailCallGroup {
+
+        String methodName;
+        final List<FunctionInfo> members = new ArrayList<>();
+        int maxArgsCount;
+
+        /**
+         * @return descriptor of (index of the entry, arguments padded to maxArgsCount, accumulator of the caller)
+         */
+        String getDescriptor() {
+            StringBuilder sb = new StringBuilder("(I");
+            for (int i = 0; i <= maxArgsCount; i++) {
+                sb.append('I');
+            }
+            return sb.append(")I").toString();
+        }
+    }
+
+    /**
+     * Links native calls. Public methods in public classes are called directly through a static field with the owner object,
+     * other methods are invoked reflectively through JvmRuntime.
+     */
+    private static class NativeLinker {
+
+        private final Function[] functions;
+        private final Set<ClassLoader> ownerClassLoaders = new LinkedHashSet<>();
+        private int globalVarCount;
+
+        NativeLinker(CompiledProgram program, NativeFunctionManager nativeFunctionManager) {
+            functions = new ProgramLinker().link(program, nativeFunctionManager);
+            globalVarCount = program.getGlobalVarCount();
+            for (int i = 0; i < functions.length; i++) {
+                if (functions[i].method.getDeclaringClass().getClassLoader() != null) {
+                    ownerClassLoaders.add(functions[i].method.getDeclaringClass().getClassLoader());
+                }
+            }
+        }
+
+        Set<ClassLoader> getOwnerClassLoaders() {
+            return ownerClassLoaders;
+        }
+
+        private boolean isDirectlyCallable(Function function) {
+            Method method = function.method;
+            return Modifier.isPublic(method.getModifiers())
+                    && Modifier.isPublic(method.getDeclaringClass().getModifiers())
+                    && (function.handle != null
+                    || method.getReturnType() == void.class || method.getReturnType() == int.class || method.getReturnType() == Integer.class);
+        }
+
+        /**
+         * Function with int parameters is called without boxing, directly or through its bound MethodHandle
+         */
+        private void generatePrimitiveCall(MethodVisitor mv, String className, int nativeIndex, int argsCount, int accumulatorVar, int nativeArgsBase) {
+            Function function = functions[nativeIndex];
+            boolean direct = isDirectlyCallable(function);
+            boolean isStatic = Modifier.isStatic(function.method.getModifiers());
+            String descriptor = Type.getMethodDescriptor(function.method);
+            if (direct && isStatic) {
+                //arguments are already on the operand stack in the order of parameters
+                mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(function.method.getDeclaringClass()), function.method.getName(), descriptor, false);
+            } else {
+                for (int i = argsCount - 1; i >= 0; i--) {
+                    mv.visitVarInsn(ISTORE, nativeArgsBase + i);
+                }
+                if (direct) {
+                    mv.visitFieldInsn(GETSTATIC, className, "owner" + nativeIndex, Type.getDescriptor(function.method.getDeclaringClass()));
+                } else {
+                    mv.visitFieldInsn(GETSTATIC, className, "handle" + nativeIndex, METHOD_HANDLE_DESCRIPTOR);
+                }
+                for (int i = 0; i < argsCount; i++) {
+                    mv.visitVarInsn(ILOAD, nativeArgsBase + i);
+                }
+                if (direct) {
+                    mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(function.method.getDeclaringClass()), function.method.getName(), descriptor, false);
+                } else {
+                    mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", descriptor, false);
+                }
+            }
+            if (!function.isVoid()) {
+                mv.visitVarInsn(ISTORE, accumulatorVar);
+            }
+        }
+
+        /**
+         * Function with (int[], int, int) parameters gets arguments copied to a new int[], they are not boxed
+         */
+        private void generateIntRangeCall(MethodVisitor mv, String className, int nativeIndex, int argsCount, int accumulatorVar, int nativeArgsBase) {
+            Function function = functions[nativeIndex];
+            boolean direct = isDirectlyCallable(function);
+            boolean isStatic = Modifier.isStatic(function.method.getModifiers());
+            String descriptor = Type.getMethodDescriptor(function.method);
+            for (int i = argsCount - 1; i >= 0; i--) {
+                mv.visitVarInsn(ISTORE, nativeArgsBase + i);
+            }
+            if (!direct) {
+                mv.visitFieldInsn(GETSTATIC, className, "handle" + nativeIndex, METHOD_HANDLE_DESCRIPTOR);
+            } else if (!isStatic) {
+                mv.visitFieldInsn(GETSTATIC, className, "owner" + nativeIndex, Type.getDescriptor(function.method.getDeclaringClass()));
+            }
+
+            pushInt(mv, argsCount);
+            mv.visitIntInsn(NEWARRAY, T_INT);
+            for (int i = 0; i < argsCount; i++) {
+                mv.visitInsn(DUP);
+                pushInt(mv, i);
+                mv.visitVarInsn(ILOAD, nativeArgsBase + i);
+                mv.visitInsn(IASTORE);
+            }
+            pushInt(mv, 0);
+            pushInt(mv, argsCount);
+
+            if (!direct) {
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", descriptor, false);
+            } else {
+                mv.visitMethodInsn(isStatic ? INVOKESTATIC : INVOKEVIRTUAL, Type.getInternalName(function.method.getDeclaringClass()), function.method.getName(), descriptor, false);
+            }
+            if (!function.isVoid()) {
+                mv.visitVarInsn(ISTORE, accumulatorVar);
+            }
+        }
+
+        void generateCall(MethodVisitor mv, String className, int nativeIndex, int argsCount, int accumulatorVar, int nativeArgsBase) {
+            Function function = functions[nativeIndex];
+            if (function.isPrimitive()) {
+                generatePrimitiveCall(mv, className, nativeIndex, argsCount, accumulatorVar, nativeArgsBase);
+                return;
+            }
+            if (function.isIntRange()) {
+                generateIntRangeCall(mv, className, nativeIndex, argsCount, accumulatorVar, nativeArgsBase);
+                return;
+            }
+
+            for (int i = argsCount - 1; i >= 0; i--) {
+                mv.visitVarInsn(ISTORE, nativeArgsBase + i);
+            }
+
+            boolean direct = isDirectlyCallable(function);
+            boolean isStatic = Modifier.isStatic(function.method.getModifiers());
+            String ownerClass = Type.getInternalName(function.method.getDeclaringClass());
+            if (direct) {
+                if (!isStatic) {
+                    mv.visitFieldInsn(GETSTATIC, className, "owner" + nativeIndex, Type.getDescriptor(function.method.getDeclaringClass()));
+                }
+            } else {
+                mv.visitFieldInsn(GETSTATIC, className, "function" + nativeIndex, FUNCTION_DESCRIPTOR);
+            }
+
+            pushInt(mv, argsCount);
+            mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+            for (int i = 0; i < argsCount; i++) {
+                mv.visitInsn(DUP);
+                pushInt(mv, i);
+                mv.visitVarInsn(ILOAD, nativeArgsBase + i);
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+                mv.visitInsn(AASTORE);
+            }
+
+            if (direct) {
+                mv.visitMethodInsn(isStatic ? INVOKESTATIC : INVOKEVIRTUAL, ownerClass, function.method.getName(), Type.getMethodDescriptor(function.method), false);
+                Class returnType = function.method.getReturnType();
+                if (returnType == Integer.class) {
+                    mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Integer", "intValue", "()I", false);
+                }
+                if (returnType != void.class) {
+                    mv.visitVarInsn(ISTORE, accumulatorVar);
+                }
+            } else {
+                mv.visitVarInsn(ILOAD, accumulatorVar);
+                mv.visitMethodInsn(INVOKESTATIC, RUNTIME_CLASS, "invokeNative", "(" + FUNCTION_DESCRIPTOR + "[Ljava/lang/Object;I)I", false);
+                mv.visitVarInsn(ISTORE, accumulatorVar);
+            }
+        }
+
+        void generateFields(ClassWriter classWriter) {
+            for (int i = 0; i < globalVarCount; i++) {
+                classWriter.visitField(ACC_PUBLIC | ACC_STATIC, "g" + i, "I", null, null).visitEnd();
+            }
+            for (int i = 0; i < functions.length; i++) {
+                if (isDirectlyCallable(functions[i])) {
+                    if (!Modifier.isStatic(functions[i].method.getModifiers())) {
+                        classWriter.visitField(ACC_PUBLIC | ACC_STATIC, "owner" + i, Type.getDescriptor(functions[i].method.getDeclaringClass()), null, null).visitEnd();
+                    }
+                } else if (functions[i].handle != null) {
+                    classWriter.visitField(ACC_PUBLIC | ACC_STATIC, "handle" + i, METHOD_HANDLE_DESCRIPTOR, null, null).visitEnd();
+                } else {
+                    classWriter.visitField(ACC_PUBLIC | ACC_STATIC, "function" + i, FUNCTION_DESCRIPTOR, null, null).visitEnd();
+                }
+            }
+        }
+
+        void bindFields(Class scriptClass) {
+            try {
+                for (int i = 0; i < functions.length; i++) {
+                    if (isDirectlyCallable(functions[i])) {
+                        if (!Modifier.isStatic(functions[i].method.getModifiers())) {
+                            scriptClass.getField("owner" + i).set(null, functions[i].ownerObject);
+                        }
+                    } else if (functions[i].handle != null) {
+                        scriptClass.getField("handle" + i).set(null, functions[i].handle);
+                    } else {
+                        scriptClass.getField("function" + i).set(null, functions[i]);
+                    }
+                }
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalStateException("Cannot link native functions of generated class", ex);
+            }
+        }
+    }
+
+    /**
+     * Sees classes of the compiler and classes of all native function owners
+     */
+    private static class ScriptClassLoader extends ClassLoader {
+
+        private final Set<ClassLoader> ownerClassLoaders;
+
+        ScriptClassLoader(Set<ClassLoader> ownerClassLoaders) {
+            super(JvmCompiler.class.getClassLoader());
+            this.ownerClassLoaders = ownerClassLoaders;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            for (ClassLoader classLoader : ownerClassLoaders) {
+                try {
+                    return classLoader.loadClass(name);
+                } catch (ClassNotFoundException ex) {
+                    //try next loader
+                }
+            }
+            throw new ClassNotFoundException(name);
+        }
+
+        Class defineScriptClass(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.simplecompiler.jvm;
+
+import com.simplecompiler.interpreter.BytecodeLoader;
+import com.simplecompiler.interpreter.CompiledProgram;
+import com.simplecompiler.interpreter.NativeFunctionManager;
+import com.simplecompiler.interpreter.ProgramExecutor;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Execution backend that compiles programs to JVM classes instead of interpreting them.<br>
+ * Generated class is cached per CompiledProgram, native functions are linked at the moment of the first execution.
+ *
+ * @author Dmitry
+ */
+public class JvmExecutor implements ProgramExecutor {
+
+    private NativeFunctionManager nativeFunctionManager = new NativeFunctionManager();
+    private final Map<CompiledProgram, JvmProgram> compiledPrograms = new WeakHashMap<>();
+
+    @Override
+    public void execute(String bytecodeString) {
+        execute(new BytecodeLoader().load(bytecodeString));
+    }
+
+    @Override
+    public void execute(CompiledProgram program) {
+        try {
+            compile(program).run();
+        } finally {
+            nativeFunctionManager.flush();
+        }
+    }
+
+    public synchronized JvmProgram compile(CompiledProgram program) {
+        JvmProgram jvmProgram = compiledPrograms.get(program);
+        if (jvmProgram == null) {
+            jvmProgram = new JvmCompiler().compile(program, nativeFunctionManager);
+            compiledPrograms.put(program, jvmProgram);
+        }
+        return jvmProgram;
+    }
+
+    @Override
+    public NativeFunctionManager getNativeFunctionManager() {
+        return nativeFunctionManager;
+    }
+}
@@ -0,0 +1,48 @@
+package com.simplecompiler.jvm;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Script compiled to JVM class. Global variables and memo caches are static fields of the class,
+ * they are reset at the start of every run and runs of one JvmProgram are serialized by its lock.
+ *
+ * @author Dmitry
+ */
+public class JvmProgram {
+
+    static final String RUN_METHOD = "run";
+
+    private final Class scriptClass;
+    private final Method runMethod;
+
+    JvmProgram(Class scriptClass) {
+        this.scriptClass = scriptClass;
+        try {
+            this.runMethod = scriptClass.getMethod(RUN_METHOD);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException("Generated class does not contain [" + RUN_METHOD + "] method", ex);
+        }
+    }
+
+    public Class getScriptClass() {
+        return scriptClass;
+    }
+
+    public synchronized void run() {
+        try {
+            runMethod.invoke(null);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
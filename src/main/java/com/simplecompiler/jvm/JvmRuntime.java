@@ -0,0 +1,30 @@
+package com.simplecompiler.jvm;
+
+import com.simplecompiler.interpreter.NativeFunctionManager.Function;
+
+/**
+ * Helpers called from generated script classes
+ *
+ * @author Dmitry
+ */
+public class JvmRuntime {
+
+    /**
+     * Reflective fallback for native functions that cannot be called directly from the generated class
+     *
+     * @return new value of accumulator
+     */
+    public static int invokeNative(Function function, Object[] args, int accumulator) {
+        Object result;
+        try {
+            result = function.method.invoke(function.ownerObject, new Object[]{args});
+        } catch (Exception ex) {
+            throw new RuntimeException("Error while execute function [" + function.name + "]", ex);
+        }
+
+        if (function.method.getReturnType() != void.class) {
+            return (Integer) result;
+        }
+        return accumulator;
+    }
+}
@@ -0,0 +1,45 @@
+package com.simplecompiler.optimizer;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes labels that nobody branches to, and instructions after unconditional branch, leave or tail-call that cannot be reached.
+ *
+ * @author Dmitry
+ */
+public class DeadCodePass implements PeepholePass {
+
+    @Override
+    public boolean optimize(List<Instruction> instructions) {
+        Set<String> usedLabels = new HashSet<>();
+        for (Instruction instruction : instructions) {
+            if (instruction.isBranch()) {
+                usedLabels.add(instruction.getArgument(0));
+            }
+        }
+
+        boolean changed = false;
+        //first instruction is the label of the function itself
+        for (int i = 1; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (instruction.isLabel() && !usedLabels.contains(instruction.getArgument(0))) {
+                instructions.remove(i);
+                i--;
+                changed = true;
+            }
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (instruction.is("branch") || instruction.is("leave") || instruction.is("tail-call")) {
+                while (i + 1 < instructions.size() && !instructions.get(i + 1).isLabel()) {
+                    instructions.remove(i + 1);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,99 @@
+package com.simplecompiler.optimizer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fuses constant operand of arithmetic and comparison into the instruction:<br>
+ * [load-long N, save, EXPRESSION, sub] to [EXPRESSION, sub-long N]<br>
+ * [save, load-long N, add] to [add-long N] for commutative operations, less and more are mirrored
+ *
+ * @author Dmitry
+ */
+public class ImmediateOperandPass implements PeepholePass {
+
+    private static final Map<String, String> IMMEDIATE_COMMANDS = new HashMap<>();
+    private static final Map<String, String> MIRRORED_COMMANDS = new HashMap<>();
+
+    static {
+        String[] commands = new String[]{"add", "sub", "mul", "div", "less", "more", "eq", "neq", "bitand", "bitor", "bitxor", "lshift", "rshift", "urshift"};
+        for (String command : commands) {
+            IMMEDIATE_COMMANDS.put(command, command + "-long");
+        }
+
+        String[] commutativeCommands = new String[]{"add", "mul", "eq", "neq", "bitand", "bitor", "bitxor"};
+        for (String command : commutativeCommands) {
+            MIRRORED_COMMANDS.put(command, command);
+        }
+        MIRRORED_COMMANDS.put("less", "more");
+        MIRRORED_COMMANDS.put("more", "less");
+    }
+
+    @Override
+    public boolean optimize(List<Instruction> instructions) {
+        boolean changed = false;
+        int i = 0;
+        while (i + 2 < instructions.size()) {
+            Instruction instruction = instructions.get(i);
+            Instruction next = instructions.get(i + 1);
+            Instruction afterNext = instructions.get(i + 2);
+            if (instruction.is("load-long") && next.is("save") && afterNext.isLoad()) {
+                //expression should start from load, otherwise it can observe accumulator that we remove
+                int consumerIndex = findConsumer(instructions, i + 2);
+                if (consumerIndex != -1) {
+                    String command = instructions.get(consumerIndex).getCommand();
+                    if (IMMEDIATE_COMMANDS.containsKey(command)) {
+                        instructions.set(consumerIndex, new Instruction(IMMEDIATE_COMMANDS.get(command), instruction.getArgument(0)));
+                        instructions.remove(i + 1);
+                        instructions.remove(i);
+                        changed = true;
+                        continue;
+                    }
+                }
+            }
+
+            if (instruction.is("save") && next.is("load-long") && MIRRORED_COMMANDS.containsKey(afterNext.getCommand())) {
+                String command = MIRRORED_COMMANDS.get(afterNext.getCommand());
+                instructions.set(i + 2, new Instruction(IMMEDIATE_COMMANDS.get(command), next.getArgument(0)));
+                instructions.remove(i + 1);
+                instructions.remove(i);
+                changed = true;
+                continue;
+            }
+            i++;
+        }
+        return changed;
+    }
+
+    /**
+     * Finds instruction that pops value saved right before the expression started at startIndex.
+     *
+     * @return index of the instruction, or -1 if expression contains control flow or value is consumed by call
+     */
+    private int findConsumer(List<Instruction> instructions, int startIndex) {
+        int depth = 0;
+        for (int i = startIndex; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            String command = instruction.getCommand();
+            if (instruction.isLabel() || instruction.isBranch() || command.equals("enter") || command.equals("leave") || command.equals("tail-call")) {
+                return -1;
+            }
+
+            if (command.equals("save")) {
+                depth++;
+            } else if (command.equals("call")) {
+                depth -= instruction.getIntArgument(1);
+                if (depth < 0) {
+                    return -1;
+                }
+            } else if (IMMEDIATE_COMMANDS.containsKey(command) || command.equals("and") || command.equals("or")) {
+                depth--;
+                if (depth < 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+}
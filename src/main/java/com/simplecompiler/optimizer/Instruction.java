@@ -0,0 +1,68 @@
+package com.simplecompiler.optimizer;
+
+import java.util.Arrays;
+
+/**
+ * One line of textual bytecode: command and its arguments
+ *
+ * @author Dmitry
+ */
+public class Instruction {
+
+    private final String command;
+    private final String[] arguments;
+
+    public Instruction(String command, String... arguments) {
+        this.command = command;
+        this.arguments = arguments;
+    }
+
+    public static Instruction parse(String line) {
+        String[] parts = line.trim().split("\\s+");
+        return new Instruction(parts[0], Arrays.copyOfRange(parts, 1, parts.length));
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public String getArgument(int index) {
+        return arguments[index];
+    }
+
+    public int getIntArgument(int index) {
+        return Integer.parseInt(arguments[index]);
+    }
+
+    public int getArgumentsCount() {
+        return arguments.length;
+    }
+
+    public boolean is(String command) {
+        return this.command.equals(command);
+    }
+
+    public boolean isLabel() {
+        return command.equals("label");
+    }
+
+    public boolean isBranch() {
+        return command.equals("branch") || command.equals("branch-false");
+    }
+
+    /**
+     * Instruction that only overwrites accumulator and has no other effect
+     */
+    public boolean isLoad() {
+        return command.equals("load-long") || command.equals("load-arg") || command.equals("load-local-var") || command.equals("load-global-var");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(command);
+        for (String argument : arguments) {
+            sb.append(' ').append(argument);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.simplecompiler.optimizer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redirects branch to a label that immediately branches again to the final destination,
+ * and removes branches to the label that directly follows the branch.
+ *
+ * @author Dmitry
+ */
+public class JumpThreadingPass implements PeepholePass {
+
+    @Override
+    public boolean optimize(List<Instruction> instructions) {
+        Map<String, Integer> labelIndexes = new HashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i).isLabel()) {
+                labelIndexes.put(instructions.get(i).getArgument(0), i);
+            }
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (!instruction.isBranch()) {
+                continue;
+            }
+
+            String label = instruction.getArgument(0);
+            String finalLabel = resolveFinalLabel(instructions, labelIndexes, label);
+            if (!finalLabel.equals(label)) {
+                instructions.set(i, new Instruction(instruction.getCommand(), finalLabel));
+                changed = true;
+            }
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (instruction.isBranch() && isLabelReachedWithoutInstructions(instructions, i + 1, instruction.getArgument(0))) {
+                //branch-false does not change accumulator, so it can be removed as well
+                instructions.remove(i);
+                i--;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private String resolveFinalLabel(List<Instruction> instructions, Map<String, Integer> labelIndexes, String label) {
+        String currentLabel = label;
+        //limit protects from infinite loop of branches
+        for (int hops = 0; hops < labelIndexes.size(); hops++) {
+            Integer labelIndex = labelIndexes.get(currentLabel);
+            if (labelIndex == null) {
+                return currentLabel;
+            }
+
+            Instruction target = firstInstructionAfter(instructions, labelIndex);
+            if (target == null || !target.is("branch")) {
+                return currentLabel;
+            }
+            currentLabel = target.getArgument(0);
+        }
+        return currentLabel;
+    }
+
+    private Instruction firstInstructionAfter(List<Instruction> instructions, int labelIndex) {
+        for (int i = labelIndex + 1; i < instructions.size(); i++) {
+            if (!instructions.get(i).isLabel()) {
+                return instructions.get(i);
+            }
+        }
+        return null;
+    }
+
+    private boolean isLabelReachedWithoutInstructions(List<Instruction> instructions, int startIndex, String label) {
+        for (int i = startIndex; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (!instruction.isLabel()) {
+                return false;
+            }
+            if (instruction.getArgument(0).equals(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
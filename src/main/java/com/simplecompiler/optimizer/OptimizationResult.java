@@ -0,0 +1,48 @@
+package com.simplecompiler.optimizer;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @author Dmitry
+ */
+public class OptimizationResult {
+
+    private final String bytecode;
+    private final Map<String, Integer> removedInstructions;
+
+    public OptimizationResult(String bytecode, Map<String, Integer> removedInstructions) {
+        this.bytecode = bytecode;
+        this.removedInstructions = Collections.unmodifiableMap(removedInstructions);
+    }
+
+    public String getBytecode() {
+        return bytecode;
+    }
+
+    /**
+     * @return count of removed instructions for every function name, labels are not counted
+     */
+    public Map<String, Integer> getRemovedInstructions() {
+        return removedInstructions;
+    }
+
+    /**
+     * @return removed instructions per function and in total, one per line
+     */
+    public String toReport() {
+        StringBuilder sb = new StringBuilder("removed instructions: ").append(getTotalRemovedInstructions()).append("\n");
+        for (Map.Entry<String, Integer> entry : removedInstructions.entrySet()) {
+            sb.append(entry.getKey()).append(" ").append(entry.getValue()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    public int getTotalRemovedInstructions() {
+        int total = 0;
+        for (int count : removedInstructions.values()) {
+            total += count;
+        }
+        return total;
+    }
+}
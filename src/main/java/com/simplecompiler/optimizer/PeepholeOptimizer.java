@@ -0,0 +1,108 @@
+package com.simplecompiler.optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optimization stage between FrontendCompiler and execution, enabled by FrontendCompiler.setOptimize. Takes textual bytecode,
+ * splits it to functions and applies peephole passes to every function until nothing changes.<br>
+ * Passes work on the text and not on the IR of FrontendCompiler: they emit instructions with immediate operands that only
+ * BytecodeLoader knows, and they also optimize bytecode that is not produced by this compiler run (cached or written by hand).
+ *
+ * @author Dmitry
+ */
+public class PeepholeOptimizer {
+
+    private static final int MAX_ROUNDS = 100;
+    private final List<PeepholePass> passes = new ArrayList<>();
+
+    /**
+     * Optimizer with the default set of passes
+     */
+    public PeepholeOptimizer() {
+        this(Arrays.asList(new ImmediateOperandPass(), new JumpThreadingPass(), new DeadCodePass(), new RedundantLoadStorePass()));
+    }
+
+    public PeepholeOptimizer(List<? extends PeepholePass> passes) {
+        this.passes.addAll(passes);
+    }
+
+    public PeepholeOptimizer addPass(PeepholePass pass) {
+        passes.add(pass);
+        return this;
+    }
+
+    public OptimizationResult optimize(String bytecode) {
+        List<String> header = new ArrayList<>();
+        Map<String, List<Instruction>> functions = splitToFunctions(bytecode, header);
+        Map<String, Integer> removedInstructions = new LinkedHashMap<>();
+        StringBuilder result = new StringBuilder();
+        for (String line : header) {
+            result.append(line).append("\n");
+        }
+
+        for (Map.Entry<String, List<Instruction>> function : functions.entrySet()) {
+            List<Instruction> instructions = function.getValue();
+            int countBefore = countInstructions(instructions);
+            for (int round = 0; round < MAX_ROUNDS; round++) {
+                boolean changed = false;
+                for (PeepholePass pass : passes) {
+                    changed |= pass.optimize(instructions);
+                }
+                if (!changed) {
+                    break;
+                }
+            }
+            removedInstructions.put(function.getKey(), countBefore - countInstructions(instructions));
+
+            for (Instruction instruction : instructions) {
+                result.append(instruction).append("\n");
+            }
+            result.append("\n");
+        }
+        return new OptimizationResult(result.toString(), removedInstructions);
+    }
+
+    private Map<String, List<Instruction>> splitToFunctions(String bytecode, List<String> header) {
+        List<Instruction> allInstructions = new ArrayList<>();
+        for (String line : bytecode.split("\n")) {
+            String trimmedLine = line.trim();
+            if (trimmedLine.isEmpty()) {
+                continue;
+            }
+            if (trimmedLine.startsWith("$")) {
+                header.add(trimmedLine);
+                continue;
+            }
+            allInstructions.add(Instruction.parse(trimmedLine));
+        }
+
+        Map<String, List<Instruction>> functions = new LinkedHashMap<>();
+        List<Instruction> currentFunction = null;
+        for (int i = 0; i < allInstructions.size(); i++) {
+            Instruction instruction = allInstructions.get(i);
+            if (instruction.isLabel() && i + 1 < allInstructions.size() && allInstructions.get(i + 1).is("enter")) {
+                currentFunction = new ArrayList<>();
+                functions.put(instruction.getArgument(0), currentFunction);
+            }
+            if (currentFunction == null) {
+                throw new IllegalArgumentException("Instruction [" + instruction + "] is outside of any function");
+            }
+            currentFunction.add(instruction);
+        }
+        return functions;
+    }
+
+    private int countInstructions(List<Instruction> instructions) {
+        int count = 0;
+        for (Instruction instruction : instructions) {
+            if (!instruction.isLabel()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
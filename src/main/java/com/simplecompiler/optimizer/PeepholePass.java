@@ -0,0 +1,17 @@
+package com.simplecompiler.optimizer;
+
+import java.util.List;
+
+/**
+ * One rewriting rule of the PeepholeOptimizer. Pass is applied to the instructions of a single function,
+ * first instruction is always the label of the function.
+ *
+ * @author Dmitry
+ */
+public interface PeepholePass {
+
+    /**
+     * @return true if instructions were changed
+     */
+    public boolean optimize(List<Instruction> instructions);
+}
@@ -0,0 +1,53 @@
+package com.simplecompiler.optimizer;
+
+import java.util.List;
+
+/**
+ * Removes loads and stores that do not change anything:<br>
+ * [store-local-var N, load-local-var N] to [store-local-var N]<br>
+ * [load-local-var N, store-local-var N] to [load-local-var N]<br>
+ * [store-local-var N, store-local-var N] to [store-local-var N]<br>
+ * [load-x, load-y] to [load-y], because the first value is overwritten before use
+ *
+ * @author Dmitry
+ */
+public class RedundantLoadStorePass implements PeepholePass {
+
+    @Override
+    public boolean optimize(List<Instruction> instructions) {
+        boolean changed = false;
+        int i = 0;
+        while (i + 1 < instructions.size()) {
+            Instruction instruction = instructions.get(i);
+            Instruction next = instructions.get(i + 1);
+            if (isSameVariable(instruction, "store-", next, "load-")) {
+                instructions.remove(i + 1);
+                changed = true;
+                continue;
+            }
+
+            if (isSameVariable(instruction, "load-", next, "store-") || isSameVariable(instruction, "store-", next, "store-")) {
+                instructions.remove(i + 1);
+                changed = true;
+                continue;
+            }
+
+            if (instruction.isLoad() && next.isLoad()) {
+                instructions.remove(i);
+                changed = true;
+                continue;
+            }
+            i++;
+        }
+        return changed;
+    }
+
+    private boolean isSameVariable(Instruction first, String firstPrefix, Instruction second, String secondPrefix) {
+        for (String variableType : new String[]{"local-var", "global-var"}) {
+            if (first.is(firstPrefix + variableType) && second.is(secondPrefix + variableType)) {
+                return first.getArgument(0).equals(second.getArgument(0));
+            }
+        }
+        return false;
+    }
+}
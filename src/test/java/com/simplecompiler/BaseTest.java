@@ -1,6 +1,8 @@
 package com.simplecompiler;
 
 import com.simplecompiler.frontend.FrontendCompiler;
+import com.simplecompiler.interpreter.ProgramExecutor;
+import com.simplecompiler.interpreter.TestPrintFunction;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -51,4 +53,17 @@ public class BaseTest {
             throw new RuntimeException("Error while reading file [" + fileName + "]", ex);
         }
     }
+
+    /**
+     * Executes the bytecode with [print] function registered in the executor
+     *
+     * @return printed values
+     */
+    @SuppressWarnings("unchecked")
+    public List<Integer> executeBytecode(ProgramExecutor executor, String bytecode) {
+        TestPrintFunction functionHolder = new TestPrintFunction();
+        executor.getNativeFunctionManager().registerFunctions(functionHolder);
+        executor.execute(bytecode);
+        return functionHolder.getPrintedValues();
+    }
 }
@@ -0,0 +1,69 @@
+package com.simplecompiler.frontend;
+
+import com.simplecompiler.BaseTest;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Dmitry
+ */
+public class CompilationCacheTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSecondCompilationIsHit() throws IOException {
+        String source = readFileFromResource("/com/simplecompiler/testsources/fibCalc.scs");
+        File directory = temporaryFolder.newFolder("cache");
+        CompilationCache cache = new CompilationCache(directory);
+        String bytecode = cache.compile(new FrontendCompiler(), source, "fibCalc.scs");
+        Assert.assertEquals(new FrontendCompiler().compile(source, "fibCalc.scs"), bytecode);
+
+        //other instance sees the same directory, as other process would
+        CompilationCache otherCache = new CompilationCache(directory);
+        Assert.assertEquals(bytecode, otherCache.compile(new FrontendCompiler(), source, "fibCalc.scs"));
+        Assert.assertEquals(1, otherCache.getHits());
+        Assert.assertEquals(0, otherCache.getMisses());
+        Assert.assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void testOptionsArePartOfKey() throws IOException {
+        String source = "(fun main() (print (+ 1 2)))";
+        CompilationCache cache = new CompilationCache(temporaryFolder.newFolder("cache"));
+        FrontendCompiler compiler = new FrontendCompiler();
+        String folded = cache.compile(compiler, source, "options.scs");
+        compiler.setSimplifyAst(false);
+        String notFolded = cache.compile(compiler, source, "options.scs");
+        Assert.assertNotEquals(folded, notFolded);
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws IOException {
+        File directory = temporaryFolder.newFolder("cache");
+        FrontendCompiler compiler = new FrontendCompiler();
+        String entrySource = "(fun main() (print 1))";
+        long entrySize = compiler.compile(entrySource, "size.scs").length();
+        CompilationCache cache = new CompilationCache(directory, entrySize * 2);
+        cache.compile(compiler, "(fun main() (print 1))", "a.scs");
+        cache.compile(compiler, "(fun main() (print 2))", "b.scs");
+        for (File file : directory.listFiles()) {
+            file.setLastModified(System.currentTimeMillis() - 60000);
+        }
+        //touch [a], so [b] becomes the oldest
+        cache.compile(compiler, "(fun main() (print 1))", "a.scs");
+        cache.compile(compiler, "(fun main() (print 3))", "c.scs");
+
+        Assert.assertEquals(2, directory.listFiles().length);
+        cache.compile(compiler, "(fun main() (print 1))", "a.scs");
+        Assert.assertEquals(2, cache.getHits());
+        cache.compile(compiler, "(fun main() (print 2))", "b.scs");
+        Assert.assertEquals(2, cache.getHits());
+    }
+}
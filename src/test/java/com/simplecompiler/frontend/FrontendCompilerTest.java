@@ -1,6 +1,8 @@
 package com.simplecompiler.frontend;
 
 import com.simplecompiler.BaseTest;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -25,4 +27,161 @@ public class FrontendCompilerTest extends BaseTest {
                 result
         );
     }
+
+    @Test
+    public void testConstantFolding() throws Exception {
+        String source = "(fun main(x)\n"
+                + "    (print (+ 2 3) (<< 1 4) (- 0x10 (* 2 0b11)))\n"
+                + "    (print (if (< 1 2) (* x (- 3 2)) (print 9)))\n"
+                + "    (print (+ 0 (* x 0)) (/ 5 0)))";
+        String result = new FrontendCompiler().compile(source, "folding.scs").trim();
+        Assert.assertEquals(
+                "label main\n"
+                + "enter 0 1\n"
+                + "load-long 5\n"
+                + "save\n"
+                + "load-long 16\n"
+                + "save\n"
+                + "load-long 10\n"
+                + "save\n"
+                + "call print 3\n"
+                + "load-arg 0\n"
+                + "save\n"
+                + "call print 1\n"
+                + "load-long 0\n"
+                + "save\n"
+                + "load-arg 0\n"
+                + "mul\n"
+                + "save\n"
+                + "load-long 0\n"
+                + "save\n"
+                + "load-long 5\n"
+                + "div\n"
+                + "save\n"
+                + "call print 2\n"
+                + "leave 0 1",
+                result
+        );
+    }
+
+    @Test
+    public void testMultiplicationByZeroKeepsUnknownSymbolError() throws Exception {
+        try {
+            new FrontendCompiler().compile("(fun main() (print (* typo 0)))", "folding.scs");
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals("Unknown symbol [typo]", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testConstantIfWithVariableIsNotDropped() throws Exception {
+        String source = "(fun main()\n"
+                + "    (if 0 (var x 1) 2)\n"
+                + "    (print x))";
+        String result = new FrontendCompiler().compile(source, "folding.scs");
+        Assert.assertTrue(result.contains("store-local-var 0"));
+    }
+
+    @Test
+    public void testTailCall() throws Exception {
+        String source = "(fun count(n)\n"
+                + "    (if (= n 0) (print n) (count (- n 1))))\n"
+                + "(fun main() (count 3) (print 1))";
+        FrontendCompiler compiler = new FrontendCompiler();
+        String result = compiler.compile(source, "tailCall.scs");
+        Assert.assertTrue(result.contains("tail-call count 1 1"));
+        Assert.assertTrue(result.contains("call count 1\n"));
+        Assert.assertTrue(result.contains("call print 1\n"));
+
+        compiler.setTailCalls(false);
+        Assert.assertFalse(compiler.compile(source, "tailCall.scs").contains("tail-call"));
+    }
+
+    @Test
+    public void testLocalVariablesAreScopedToFunction() throws Exception {
+        String source = "(var g 7)\n"
+                + "(fun first(a) (var x a) (var y x) (print y))\n"
+                + "(fun second(b) (var z g) (print z b))";
+        String result = new FrontendCompiler().compile(source, "scopes.scs");
+        Assert.assertTrue(result.contains("label first\nenter 2 1\n"));
+        Assert.assertTrue(result.contains("label second\nenter 1 1\nload-global-var 0\nstore-local-var 0\n"));
+
+        try {
+            new FrontendCompiler().compile("(fun first(a) (var x a))\n(fun second() (print x))", "scopes.scs");
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals("Unknown symbol [x]", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testCompileToStream() throws Exception {
+        String source = readFileFromResource("/com/simplecompiler/testsources/testGlobalVariables.scs");
+        FrontendCompiler compiler = new FrontendCompiler();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compiler.compile(source, "testGlobalVariables.scs", out);
+        Assert.assertEquals(compiler.compile(source, "testGlobalVariables.scs"), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMemoizedFunctionShouldBePure() throws Exception {
+        FrontendCompiler compiler = new FrontendCompiler();
+        String result = compiler.compile("(memo-fun sq(x) (* x x))\n(fun main() (print (sq 3)))", "memo.scs");
+        Assert.assertTrue(result.contains("$memoized sq\nlabel sq\nenter 0 1\n"));
+        try {
+            compiler.compile("(fun log(x) (print x) x)\n(memo-fun sq(x) (* (log x) x))\n(fun main() (print (sq 3)))", "memo.scs");
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Memoized function [sq] should be pure, but native function [print] is called from [log]", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testInlining() throws Exception {
+        String source = "(fun sq(x) (* x x))\n"
+                + "(fun count(n) (if (= n 0) 0 (count (- n 1))))\n"
+                + "(fun next(n) (count (- n 1)))\n"
+                + "(memo-fun cube(x) (* x (sq x)))\n"
+                + "(fun last(a b) (next b))\n"
+                + "(fun main() (print (sq (sq 3))) (print (cube 2) (next 3) (last 1 2)))";
+        FrontendCompiler compiler = new FrontendCompiler();
+        compiler.setInlineThreshold(10);
+        String result = compiler.compile(source, "inline.scs");
+        Assert.assertFalse(result.contains("call sq"));
+        Assert.assertFalse(result.contains("call next"));
+        Assert.assertTrue(result.contains("call cube 1\n"));
+        Assert.assertTrue(result.contains("tail-call count 1 1\n"));
+        //tail call of the inlined function stays a tail call only in tail position of the caller
+        Assert.assertTrue(result.contains("label last\nenter 1 2\nload-arg 0\nstore-local-var 0\n"));
+        Assert.assertTrue(result.contains("tail-call count 1 2\n"));
+        Assert.assertTrue(result.contains("label main\nenter 6 0\nload-long 3\nstore-local-var 0\nload-local-var 0\nsave\nload-local-var 0\nmul\n"
+                + "store-local-var 1\nload-local-var 1\nsave\nload-local-var 1\nmul\nsave\ncall print 1\n"));
+
+        compiler.setInlineThreshold(3);
+        Assert.assertTrue(compiler.compile(source, "inline.scs").contains("call sq 1\n"));
+    }
+
+    @Test
+    public void testRemoveUnusedCode() throws Exception {
+        String source = "(var unused 5)\n"
+                + "(var base 10)\n"
+                + "(var logged (log 1))\n"
+                + "(var derived (+ base 1))\n"
+                + "(fun log(x) (print x) x)\n"
+                + "(fun helper(x) (+ x derived))\n"
+                + "(fun unusedHelper(x) (helper x))\n"
+                + "(fun main() (print (helper 2)))";
+        FrontendCompiler compiler = new FrontendCompiler();
+        compiler.setRemoveUnusedCode(true);
+        String result = compiler.compile(source, "unused.scs");
+        Assert.assertTrue(result.startsWith("$global-var-count 3\nlabel INIT_BLOCK\nenter 0 0\nload-long 10\nstore-global-var 0\n"));
+        Assert.assertTrue(result.contains("load-global-var 0\nadd\nstore-global-var 2\n"));
+        Assert.assertTrue(result.contains("label log\n"));
+        Assert.assertTrue(result.contains("label helper\nenter 0 1\nload-global-var 2\n"));
+        Assert.assertFalse(result.contains("unusedHelper"));
+
+        compiler.setRemoveUnusedCode(false);
+        Assert.assertTrue(compiler.compile(source, "unused.scs").contains("$global-var-count 4\n"));
+    }
 }
@@ -0,0 +1,54 @@
+package com.simplecompiler.frontend;
+
+import com.simplecompiler.BaseTest;
+import com.simplecompiler.interpreter.Interpreter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class IncrementalCompilerTest extends BaseTest {
+
+    @Test
+    public void testSplitTopLevelForms() {
+        List<String> forms = IncrementalCompiler.splitTopLevelForms("; comment (\n(var x 1)\n(fun f(a) ; inner )\n (+ a x))  (fun main() (print (f 2)))");
+        Assert.assertEquals(Arrays.asList("(var x 1)", "(fun f(a) ; inner )\n (+ a x))", "(fun main() (print (f 2)))"), forms);
+    }
+
+    @Test
+    public void testOnlyChangedFormsAreCompiled() throws IOException {
+        String source = readFileFromResource("/com/simplecompiler/testsources/testGlobalVariables.scs");
+        IncrementalCompiler compiler = new IncrementalCompiler(new FrontendCompiler(), "testGlobalVariables.scs");
+        String bytecode = compiler.compile(source);
+        int formsCount = compiler.getLastCompiledFormsCount();
+        checkEqual(executeBytecode(new Interpreter(), bytecode), Arrays.asList(55, 60, 75, 43, 49, 30, 50, 55, 60, 75, 55, 60, 75, 43, 49));
+
+        Assert.assertEquals(bytecode, compiler.compile(source));
+        Assert.assertEquals(0, compiler.getLastCompiledFormsCount());
+        Assert.assertEquals(formsCount, compiler.getLastReusedFormsCount());
+
+        String editedBytecode = compiler.compile(source + "\n(fun unused(a) (if a 1 2))");
+        Assert.assertEquals(1, compiler.getLastCompiledFormsCount());
+        Assert.assertTrue(editedBytecode.startsWith(bytecode.trim()));
+    }
+
+    @Test
+    public void testDependentFormsAreRecompiled() throws IOException {
+        IncrementalCompiler compiler = new IncrementalCompiler(new FrontendCompiler(), "edit.scs");
+        String functions = "(fun f(a) (if (< a 0) 0 (+ a y)))\n"
+                + "(fun main() (print (f 5) (g 1)))";
+        compiler.compile("(var y 10)\n(fun g(a) a)\n" + functions);
+        //global [y] moves to other index, so unchanged [f] is compiled again, [main] is reused
+        String bytecode = compiler.compile("(var x 1)\n(var y 20)\n(fun g(a) (+ a x))\n" + functions);
+        Assert.assertEquals(4, compiler.getLastCompiledFormsCount());
+        Assert.assertEquals(1, compiler.getLastReusedFormsCount());
+        checkEqual(executeBytecode(new Interpreter(), bytecode), Arrays.asList(25, 2));
+        Assert.assertEquals(bytecode, compiler.compile("(var x 1)\n(var y 20)\n(fun g(a) (+ a x))\n" + functions));
+        Assert.assertEquals(0, compiler.getLastCompiledFormsCount());
+        Assert.assertTrue(bytecode.contains("label condition_edit_scs_f_f_0"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.simplecompiler.frontend;
+
+import com.simplecompiler.BaseTest;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class SExpressionReaderTest extends BaseTest {
+
+    @Test
+    public void testReadForms() throws IOException {
+        List<Object> forms = new SExpressionReader("; comment\n(fun main() ; (not a list\n  (print 0x1F 0b101 -7 007 a-1))\n(var x ())").readAll();
+        Assert.assertEquals(Arrays.asList(
+                Arrays.asList("fun", "main", Collections.emptyList(), Arrays.asList("print", "31", "5", "-7", "007", "a-1")),
+                Arrays.asList("var", "x", Collections.emptyList())), forms);
+    }
+
+    @Test
+    public void testAtomsWithoutSeparator() throws IOException {
+        //same as former PEG grammar: the longest number is taken, rest of the atom starts new atom
+        Assert.assertEquals(Arrays.asList("12", "abc", "0", "xyz", "0", "b2", "-", "-0", "x1", "31", "g"),
+                new SExpressionReader("12abc 0xyz 0b2 - -0x1 0x1Fg").readAll());
+    }
+
+    @Test
+    public void testReadFromReaderAcrossBuffer() throws IOException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            source.append("(fun f").append(i).append("(a) (+ a 0x10))\n");
+        }
+        List<Object> expected = new SExpressionReader(source).readAll();
+        Assert.assertEquals(2000, expected.size());
+        Assert.assertEquals(expected, new SExpressionReader(new StringReader(source.toString())).readAll());
+    }
+
+    @Test
+    public void testErrorPosition() throws IOException {
+        checkError("(fun main()\n  (print #1))", "Unexpected character [#] at line 2, column 10", 2, 10);
+        checkError("(fun main()\n  (print 1)))", "Unexpected [)] at line 2, column 13", 2, 13);
+        checkError("(fun main()\n  (print 1)", "Missing [)] at line 2, column 12", 2, 12);
+        checkError("(print 0xFFFFFFFFF)", "Number [0xFFFFFFFFF] does not fit to int at line 1, column 8", 1, 8);
+        checkError(" ; only comment", "Source does not contain any expression at line 1, column 16", 1, 16);
+    }
+
+    private void checkError(String source, String message, int line, int column) throws IOException {
+        try {
+            new SExpressionReader(source).readAll();
+            Assert.fail();
+        } catch (SExpressionSyntaxException ex) {
+            Assert.assertEquals(message, ex.getMessage());
+            Assert.assertEquals(line, ex.getLine());
+            Assert.assertEquals(column, ex.getColumn());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.BaseTest;
+import com.simplecompiler.frontend.FrontendCompiler;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class BatchExecutorTest extends BaseTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testRunsSharedProgramWithOwnInputs() throws IOException {
+        CompiledProgram program = new BytecodeLoader().load(new FrontendCompiler().compile(
+                "(fun nfibs (n) (if (< n 2) n (+ (nfibs (- n 1)) (nfibs (- n 2)))))\n"
+                + "(fun main() (print (input) (nfibs (input))))", "batch.scs"));
+        List<InputFunctions> runs = new BatchExecutor(executorService).execute(program, 200, new BatchExecutor.NativeFunctionsFactory<InputFunctions>() {
+            @Override
+            public InputFunctions create(int runIndex) {
+                return new InputFunctions(runIndex % 20);
+            }
+        });
+
+        Assert.assertEquals(200, runs.size());
+        int[] fibs = new int[]{0, 1, 1, 2, 3, 5, 8, 13, 21, 34, 55, 89, 144, 233, 377, 610, 987, 1597, 2584, 4181};
+        for (int i = 0; i < runs.size(); i++) {
+            checkEqual(runs.get(i).getPrintedValues(), Arrays.asList(i % 20, fibs[i % 20]));
+        }
+    }
+
+    @Test(expected = ScriptStackOverflowException.class)
+    public void testErrorOfRunIsRethrown() throws IOException {
+        CompiledProgram program = new BytecodeLoader().load(new FrontendCompiler().compile(
+                "(fun depth(n) (+ 1 (depth n)))\n"
+                + "(fun main() (print (depth (input))))", "batch.scs"));
+        BatchExecutor batchExecutor = new BatchExecutor(executorService);
+        batchExecutor.setMaxStackSize(1000);
+        batchExecutor.execute(program, 10, new BatchExecutor.NativeFunctionsFactory<InputFunctions>() {
+            @Override
+            public InputFunctions create(int runIndex) {
+                return new InputFunctions(runIndex);
+            }
+        });
+    }
+
+    public static class InputFunctions extends TestPrintFunction {
+
+        private final int input;
+
+        public InputFunctions(int input) {
+            this.input = input;
+        }
+
+        @NativeFunction(name = "input")
+        public int input() {
+            return input;
+        }
+    }
+}
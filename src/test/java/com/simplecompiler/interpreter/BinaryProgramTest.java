@@ -0,0 +1,51 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.BaseTest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Dmitry
+ */
+public class BinaryProgramTest extends BaseTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        CompiledProgram program = new BytecodeLoader().load(compileFileFromResource("/com/simplecompiler/testsources/testGlobalVariables.scs"));
+        File file = temporaryFolder.newFile("testGlobalVariables.scb");
+        new BinaryProgramWriter().write(program, file);
+        CompiledProgram loadedProgram = new BinaryProgramLoader().load(file);
+
+        Assert.assertArrayEquals(program.getCode(), loadedProgram.getCode());
+        Assert.assertEquals(program.getFunctions(), loadedProgram.getFunctions());
+        Assert.assertArrayEquals(program.getNativeFunctionNames(), loadedProgram.getNativeFunctionNames());
+        Assert.assertEquals(3, loadedProgram.getGlobalVarCount());
+
+        Interpreter interpreter = new Interpreter();
+        TestPrintFunction functionHolder = new TestPrintFunction();
+        interpreter.getNativeFunctionManager().registerFunctions(functionHolder);
+        interpreter.execute(loadedProgram);
+        checkEqual(functionHolder.getPrintedValues(), Arrays.asList(55, 60, 75, 43, 49, 30, 50, 55, 60, 75, 55, 60, 75, 43, 49));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadWrongMagic() {
+        new BinaryProgramLoader().load(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 0, 0, 0, 1}), "wrong.scb");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadTruncatedFile() {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putInt(BinaryProgramWriter.MAGIC).putInt(BinaryProgramWriter.VERSION).flip();
+        new BinaryProgramLoader().load(buffer, "truncated.scb");
+    }
+}
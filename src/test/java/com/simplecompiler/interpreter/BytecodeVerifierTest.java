@@ -0,0 +1,101 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class BytecodeVerifierTest extends BaseTest {
+
+    @Test
+    public void testMaxStackDepth() {
+        CompiledProgram program = new BytecodeLoader().load("label f\nenter 1 2\nload-arg 0\nsave\nload-arg 1\nsave\ncall g 2\nleave 1 2\n"
+                + "label g\nenter 0 2\nload-arg 0\nleave 0 2\n"
+                + "label main\nenter 0 0\npush-long 1\npush-long 2\ncall f 2\nsave\ncall print 1\nleave 0 0");
+        int[] maxDepths = new BytecodeVerifier().verify(program);
+        //two arguments and the return address
+        Assert.assertEquals(3, maxDepths[program.getFunctionAddress("f")]);
+        Assert.assertEquals(0, maxDepths[program.getFunctionAddress("g")]);
+        Assert.assertEquals(3, maxDepths[program.getFunctionAddress("main")]);
+    }
+
+    @Test
+    public void testCompiledSourcesAreValid() {
+        new BytecodeVerifier().verify(new BytecodeLoader().load(compileFileFromResource("/com/simplecompiler/testsources/testGlobalVariables.scs")));
+        new BytecodeVerifier().verify(new BytecodeLoader().load(compileFileFromResource("/com/simplecompiler/testsources/memoFib.scs")));
+        new BytecodeVerifier().verify(new BytecodeLoader().load(compileFileFromResource("/com/simplecompiler/testsources/tailRecursion.scs")));
+    }
+
+    @Test
+    public void testValueLeftOnStack() {
+        checkError("label main\nenter 0 0\nload-long 1\nsave\nleave 0 0",
+                "Verification failed in function [main] at [5]: [1] values are left on the stack");
+    }
+
+    @Test
+    public void testDifferentDepthOnJoinedPaths() {
+        checkError("label main\nenter 0 0\nload-long 1\nbranch-false end\nsave\nlabel end\nload-long 2\nleave 0 0",
+                "Verification failed in function [main] at [7]: stack depth at [8] is [0] on one path and [1] on another");
+    }
+
+    @Test
+    public void testPopFromEmptyStack() {
+        checkError("label main\nenter 0 0\nload-long 1\nadd\nleave 0 0",
+                "Verification failed in function [main] at [5]: [add] pops [1] values, but stack has [0]");
+    }
+
+    @Test
+    public void testIndexOutOfRange() {
+        checkError("label main\nenter 1 0\nload-local-var 1\nleave 1 0",
+                "Verification failed in function [main] at [3]: local variable index [1] is out of range [0, 1)");
+        checkError("$global-var-count 1\nlabel main\nenter 0 0\nload-global-var 1\nleave 0 0",
+                "Verification failed in function [main] at [3]: global variable index [1] is out of range [0, 1)");
+    }
+
+    @Test
+    public void testLeaveDoesNotMatchEnter() {
+        checkError("label main\nenter 1 0\nleave 0 0",
+                "Verification failed in function [main] at [3]: [leave] does not match [enter] of the function");
+    }
+
+    @Test
+    public void testFallThroughEndOfFunction() {
+        checkError("label f\nenter 0 0\nload-long 1\nlabel main\nenter 0 0\nleave 0 0",
+                "Verification failed in function [f] at [3]: execution falls through the end of the function");
+    }
+
+    @Test
+    public void testBranchToOtherFunction() {
+        checkError("label f\nenter 0 0\nbranch inside\nleave 0 0\nlabel main\nenter 0 0\nlabel inside\nleave 0 0",
+                "Verification failed in function [f] at [3]: branch target [11] is not an instruction of the function");
+    }
+
+    @Test
+    public void testTailCallInMemoizedFunction() {
+        checkError("$memoized f\nlabel f\nenter 0 1\nload-arg 0\nsave\ntail-call f 1 1\nleave 0 1\nlabel main\nenter 0 0\nleave 0 0",
+                "Verification failed in function [f] at [6]: [tail-call] in memoized function skips caching of the result");
+    }
+
+    @Test
+    public void testProgramIsVerifiedOnce() {
+        CompiledProgram program = new BytecodeLoader().load(compileFileFromResource("/com/simplecompiler/testsources/memoFib.scs"));
+        int[] frameSizes = program.getFrameSizes();
+        Interpreter interpreter = new Interpreter();
+        interpreter.getNativeFunctionManager().registerFunctions(new TestPrintFunction());
+        interpreter.execute(program);
+        interpreter.execute(program);
+        Assert.assertSame(frameSizes, program.getFrameSizes());
+        Assert.assertSame(program.getMemoFunctionAddresses(), program.getMemoFunctionAddresses());
+    }
+
+    private void checkError(String bytecode, String message) {
+        try {
+            new BytecodeVerifier().verify(new BytecodeLoader().load(bytecode));
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+            Assert.assertEquals(message, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.BaseTest;
+import com.simplecompiler.frontend.FrontendCompiler;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Runs in a separate surefire execution with -Dsimplecompiler.profiling=true, other tests run with profiling disabled
+ *
+ * @author Dmitry
+ */
+public class ExecutionProfileTest extends BaseTest {
+
+    @Test
+    public void testProfile() throws IOException {
+        Interpreter interpreter = new Interpreter();
+        TestPrintFunction functionHolder = new TestPrintFunction();
+        interpreter.getNativeFunctionManager().registerFunctions(functionHolder);
+        ExecutionProfile profile = interpreter.profile(new BytecodeLoader().load(new FrontendCompiler().compile(
+                "(fun depth(n) (if (= n 0) 0 (+ 1 (depth (- n 1)))))\n"
+                + "(fun main() (print (depth 3)) (print (depth 2)))", "depth.scs")));
+        checkEqual(functionHolder.getPrintedValues(), Arrays.asList(3, 2));
+
+        Assert.assertEquals(Long.valueOf(1), profile.getCallCounts().get("main"));
+        Assert.assertEquals(Long.valueOf(4 + 3), profile.getCallCounts().get("depth"));
+        Assert.assertEquals(Long.valueOf(2), profile.getNativeCallCounts().get("print"));
+        Assert.assertEquals(Long.valueOf(4 + 3 + 1), profile.getOpcodeCounts().get("enter"));
+        Assert.assertEquals(1 + 4, profile.getMaxCallDepth());
+
+        long exclusiveSum = 0;
+        for (long count : profile.getExclusiveCounts().values()) {
+            exclusiveSum += count;
+        }
+        Assert.assertEquals(profile.getExecutedInstructionsCount(), exclusiveSum);
+        Assert.assertEquals(Long.valueOf(profile.getExecutedInstructionsCount()), profile.getInclusiveCounts().get("main"));
+
+        //collapsed stacks split the same instructions by call stack
+        long stacksSum = 0;
+        for (String line : profile.toCollapsedStacks().split("\n")) {
+            stacksSum += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+        }
+        Assert.assertEquals(profile.getExecutedInstructionsCount(), stacksSum);
+        Assert.assertTrue(profile.toCollapsedStacks().contains("main;depth;depth;depth;depth "));
+    }
+}
@@ -1,10 +1,15 @@
 package com.simplecompiler.interpreter;
 
 import com.simplecompiler.BaseTest;
+import com.simplecompiler.frontend.FrontendCompiler;
+import com.simplecompiler.optimizer.PeepholeOptimizer;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.swing.JOptionPane;
+import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -115,6 +120,152 @@ public class InterpreterTest extends BaseTest {
         checkEqual(executeScript("/com/simplecompiler/testsources/testForLoop.scs"), Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
     }
 
+    @Test
+    public void testTailRecursion() throws IOException {
+        //without tail calls the stack of the interpreter is not enough for such recursion depth
+        checkEqual(executeScript("/com/simplecompiler/testsources/tailRecursion.scs"), Arrays.asList(1250025000, 0, 1));
+    }
+
+    @Test
+    public void testInliningAndUnusedCodeRemoval() throws IOException {
+        FrontendCompiler compiler = new FrontendCompiler();
+        compiler.setInlineThreshold(100);
+        compiler.setRemoveUnusedCode(true);
+        for (String name : Arrays.asList("functionChain", "testVariablesInFunctions", "testGlobalVariables", "tailRecursion", "recursion", "memoFib", "testIf")) {
+            String path = "/com/simplecompiler/testsources/" + name + ".scs";
+            String bytecode = compiler.compile(readFileFromResource(path), name + ".scs");
+            checkEqual(executeBytecode(new Interpreter(), bytecode), executeScript(path));
+        }
+    }
+
+    @Test
+    public void testStackGrowsOnDemand() throws IOException {
+        Interpreter interpreter = new Interpreter();
+        interpreter.setInitialStackSize(4);
+        String bytecode = new FrontendCompiler().compile("(fun depth(n) (if (= n 0) 0 (+ 1 (depth (- n 1)))))\n"
+                + "(fun main() (print (depth 20000)))", "depth.scs");
+        checkEqual(executeBytecode(interpreter, bytecode), Arrays.asList(20000));
+    }
+
+    @Test
+    public void testStackOverflowNamesFunction() throws IOException {
+        Interpreter interpreter = new Interpreter();
+        interpreter.setMaxStackSize(1000);
+        interpreter.getNativeFunctionManager().registerFunctions(new TestPrintFunction());
+        try {
+            interpreter.execute(new FrontendCompiler().compile("(fun depth(n) (+ 1 (depth (- n 1))))\n"
+                    + "(fun main() (print (depth 1)))", "depth.scs"));
+            Assert.fail();
+        } catch (ScriptStackOverflowException ex) {
+            Assert.assertEquals("depth", ex.getFunctionName());
+            Assert.assertEquals("Stack overflow in function [depth], maximum stack size is [1000]", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testMemoizedFunctions() throws IOException {
+        Interpreter interpreter = new Interpreter();
+        TestPrintFunction functionHolder = new TestPrintFunction();
+        interpreter.getNativeFunctionManager().registerFunctions(functionHolder);
+        Map<String, MemoCache> memoCaches = new HashMap<>();
+        interpreter.execute(new BytecodeLoader().load(compileFileFromResource("/com/simplecompiler/testsources/memoFib.scs")), memoCaches);
+        checkEqual(functionHolder.getPrintedValues(), Arrays.asList(102334155, 1134903170, 601080390));
+        //every argument is computed once, then taken from the cache
+        Assert.assertEquals(46, memoCaches.get("nfibs").getMisses());
+        Assert.assertEquals(44, memoCaches.get("nfibs").getHits());
+        //(0, 0) is never reached
+        Assert.assertEquals(17 * 17 - 1, memoCaches.get("paths").getMisses());
+    }
+
+    @Test
+    public void testMemoizedFunctionWithCallInTailPosition() throws IOException {
+        Interpreter interpreter = new Interpreter();
+        TestPrintFunction functionHolder = new TestPrintFunction();
+        interpreter.getNativeFunctionManager().registerFunctions(functionHolder);
+        Map<String, MemoCache> memoCaches = new HashMap<>();
+        String bytecode = new FrontendCompiler().compile("(fun g(n) (- n 1))\n"
+                + "(memo-fun f(n) (if (< n 2) n (g n)))\n"
+                + "(fun main() (print (f 5) (f 5) (f 1) (f 1)))", "memo.scs");
+        interpreter.execute(new BytecodeLoader().load(bytecode), memoCaches);
+        checkEqual(functionHolder.getPrintedValues(), Arrays.asList(4, 4, 1, 1));
+        Assert.assertEquals(2, memoCaches.get("f").getMisses());
+        Assert.assertEquals(2, memoCaches.get("f").getHits());
+    }
+
+    @Test
+    public void testMemoCacheIsBounded() throws IOException {
+        Interpreter interpreter = new Interpreter();
+        interpreter.setMemoCacheSize(2);
+        TestPrintFunction functionHolder = new TestPrintFunction();
+        interpreter.getNativeFunctionManager().registerFunctions(functionHolder);
+        Map<String, MemoCache> memoCaches = new HashMap<>();
+        interpreter.execute(new BytecodeLoader().load(compileFileFromResource("/com/simplecompiler/testsources/memoFib.scs")), memoCaches);
+        checkEqual(functionHolder.getPrintedValues(), Arrays.asList(102334155, 1134903170, 601080390));
+        Assert.assertEquals(2, memoCaches.get("nfibs").getSize());
+    }
+
+    @Test
+    public void testExecutionResumesAfterBudgetRunsOut() throws IOException {
+        Interpreter interpreter = new Interpreter();
+        TestPrintFunction functionHolder = new TestPrintFunction();
+        interpreter.getNativeFunctionManager().registerFunctions(functionHolder);
+        ScriptExecution execution = interpreter.start(new BytecodeLoader().load(compileFileFromResource("/com/simplecompiler/testsources/testForLoop.scs")));
+        int slices = 1;
+        while (!execution.resume(3)) {
+            slices++;
+        }
+        Assert.assertTrue(execution.isFinished());
+        //every iteration of the loop spends one branch
+        Assert.assertTrue(slices >= 10 / 3);
+        checkEqual(functionHolder.getPrintedValues(), Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+    }
+
+    @Test
+    public void testProfilingIsDisabledByDefault() throws IOException {
+        //ExecutionProfileTest runs in its own surefire execution with profiling enabled
+        Assert.assertFalse(Interpreter.PROFILING);
+        try {
+            new Interpreter().profile(new BytecodeLoader().load(new FrontendCompiler().compile("(fun main() (print 1))", "main.scs")));
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals("Profiling is disabled, run with -Dsimplecompiler.profiling=true", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testBytecodeDecoding() throws IOException {
+        CompiledProgram program = new BytecodeLoader().load(compileFileFromResource("/com/simplecompiler/testsources/defineFunctionAndCallIt.scs"));
+        int[] code = program.getCode();
+        int mul2Address = program.getFunctionAddress("mul2");
+        int mainAddress = program.getFunctionAddress("main");
+        Assert.assertEquals(0, mul2Address);
+        Assert.assertEquals(Opcodes.ENTER, code[mainAddress]);
+        //enter, push-long, push-long
+        int callAddress = mainAddress + 3 + 2 + 2;
+        Assert.assertEquals(Opcodes.CALL, code[callAddress]);
+        Assert.assertEquals(mul2Address, code[callAddress + 1]);
+        Assert.assertEquals(2, code[callAddress + 2]);
+        Assert.assertEquals(Opcodes.CALL_NATIVE, code[callAddress + 4]);
+        Assert.assertEquals("print", program.getNativeFunctionNames()[code[callAddress + 5]]);
+    }
+
+    @Test
+    public void testSuperinstructionsDump() throws IOException {
+        String bytecode = new PeepholeOptimizer().optimize(compileFileFromResource("/com/simplecompiler/testsources/fibCalc.scs")).getBytecode();
+        CompiledProgram program = new BytecodeLoader().load(bytecode);
+        String dump = new ProgramDisassembler().disassemble(program);
+        Assert.assertEquals(readFileFromResource("/com/simplecompiler/testsources/fibCalc_superinstructions_bytecode.txt"), dump.trim());
+        Assert.assertArrayEquals(program.getCode(), new BytecodeLoader().load(dump).getCode());
+    }
+
+    @Test
+    public void testSuperinstructionsNotSelectedAcrossLabel() {
+        BytecodeLoader loader = new BytecodeLoader();
+        CompiledProgram program = loader.load("label main\nenter 0 0\nload-long 1\nlabel a\nsave\ncall print 1\nleave 0 0");
+        Assert.assertEquals(Opcodes.LOAD_LONG, program.getCode()[3]);
+        Assert.assertEquals(Opcodes.SAVE, program.getCode()[5]);
+    }
+
     private List<Integer> executeScript(String path) {
         String bytecode = compileFileFromResource(path);
         Interpreter interpreter = new Interpreter();
@@ -0,0 +1,58 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.BaseTest;
+import com.simplecompiler.frontend.FrontendCompiler;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class NativeFunctionManagerTest extends BaseTest {
+
+    public static final String PRIMITIVE_CALLS_SOURCE = "(fun main()\n"
+            + "    (print (add3 1 2 3) (sub 10 4) (ten))\n"
+            + "    (record 7)\n"
+            + "    (print (+ 5 (record 1))))";
+
+    @Test
+    public void testPrimitiveSignatureIsBound() {
+        NativeFunctionManager nativeFunctionManager = new NativeFunctionManager();
+        nativeFunctionManager.registerFunctions(new TestPrimitiveFunctions());
+        Assert.assertTrue(nativeFunctionManager.findFunction("add3").isPrimitive());
+        Assert.assertEquals(3, nativeFunctionManager.findFunction("add3").argsCount);
+        Assert.assertTrue(nativeFunctionManager.findFunction("record").isVoid());
+        Assert.assertFalse(nativeFunctionManager.findFunction("print").isPrimitive());
+    }
+
+    @Test
+    public void testPrimitiveCalls() throws IOException {
+        Interpreter interpreter = new Interpreter();
+        TestPrimitiveFunctions functionHolder = new TestPrimitiveFunctions();
+        interpreter.getNativeFunctionManager().registerFunctions(functionHolder);
+        interpreter.execute(new FrontendCompiler().compile(PRIMITIVE_CALLS_SOURCE, "primitive.scs"));
+        //void function keeps accumulator unchanged
+        checkEqual(functionHolder.getPrintedValues(), Arrays.asList(6, 6, 10, 70, 10, 6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedParameterType() {
+        new NativeFunctionManager().registerFunctions(new Object() {
+            @NativeFunction(name = "wrong")
+            public void wrong(String value) {
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeclaredArgsCountMismatch() {
+        new NativeFunctionManager().registerFunctions(new Object() {
+            @NativeFunction(name = "wrong", argsCount = 2)
+            public int wrong(int value) {
+                return value;
+            }
+        });
+    }
+}
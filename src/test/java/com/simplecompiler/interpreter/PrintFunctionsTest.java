@@ -0,0 +1,98 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.BaseTest;
+import com.simplecompiler.frontend.FrontendCompiler;
+import com.simplecompiler.jvm.JvmExecutor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class PrintFunctionsTest extends BaseTest {
+
+    private static final String SOURCE = "(fun main()\n"
+            + "    (print 0 -15 (- (- 0 2147483647) 1))\n"
+            + "    (for (var x 0) (< x 10) (var x (+ x 1))\n"
+            + "        (print (* x 1000000)))\n"
+            + "    (print))";
+
+    @Test
+    public void testWritesThroughSmallBuffer() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter();
+        interpreter.getNativeFunctionManager().registerFunctions(new PrintFunctions(Channels.newChannel(output), 16));
+        interpreter.execute(new FrontendCompiler().compile(SOURCE, "print.scs"));
+        Assert.assertEquals(expectedOutput(), new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testJvmBackend() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        JvmExecutor executor = new JvmExecutor();
+        executor.getNativeFunctionManager().registerFunctions(new PrintFunctions(Channels.newChannel(output)));
+        executor.execute(new FrontendCompiler().compile(SOURCE, "print.scs"));
+        Assert.assertEquals(expectedOutput(), new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCapture() throws IOException {
+        PrintFunctions printFunctions = PrintFunctions.capture();
+        Interpreter interpreter = new Interpreter();
+        interpreter.getNativeFunctionManager().registerFunctions(printFunctions);
+        interpreter.execute(new FrontendCompiler().compile(SOURCE, "print.scs"));
+        Assert.assertArrayEquals(new int[]{0, -15, Integer.MIN_VALUE, 0, 1000000, 2000000, 3000000, 4000000, 5000000, 6000000, 7000000, 8000000, 9000000},
+                printFunctions.getPrintedValues());
+        Assert.assertArrayEquals(new int[]{3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 13}, printFunctions.getLineEnds());
+        Assert.assertArrayEquals(new int[]{0, -15, Integer.MIN_VALUE}, printFunctions.getPrintedLine(0));
+        Assert.assertArrayEquals(new int[0], printFunctions.getPrintedLine(11));
+    }
+
+    @Test
+    public void testCaptureKeepsLines() throws IOException {
+        PrintFunctions printFunctions = PrintFunctions.capture();
+        Interpreter interpreter = new Interpreter();
+        interpreter.getNativeFunctionManager().registerFunctions(printFunctions);
+        interpreter.execute(new FrontendCompiler().compile("(fun main() (print 1 2) (print 1) (print 2))", "print.scs"));
+        Assert.assertArrayEquals(new int[]{1, 2, 1, 2}, printFunctions.getPrintedValues());
+        Assert.assertArrayEquals(new int[]{2, 3, 4}, printFunctions.getLineEnds());
+        Assert.assertArrayEquals(new int[]{1, 2}, printFunctions.getPrintedLine(0));
+        Assert.assertArrayEquals(new int[]{2}, printFunctions.getPrintedLine(2));
+    }
+
+    @Test
+    public void testOutputBeforeErrorIsFlushed() throws IOException {
+        String bytecode = new FrontendCompiler().compile("(fun main() (print 1 2) (print (/ 1 0)))", "error.scs");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter();
+        interpreter.getNativeFunctionManager().registerFunctions(new PrintFunctions(Channels.newChannel(output)));
+        try {
+            interpreter.execute(bytecode);
+            Assert.fail();
+        } catch (ArithmeticException ex) {
+            Assert.assertEquals("1 2\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+        }
+
+        output.reset();
+        JvmExecutor executor = new JvmExecutor();
+        executor.getNativeFunctionManager().registerFunctions(new PrintFunctions(Channels.newChannel(output)));
+        try {
+            executor.execute(bytecode);
+            Assert.fail();
+        } catch (ArithmeticException ex) {
+            Assert.assertEquals("1 2\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private String expectedOutput() {
+        StringBuilder sb = new StringBuilder("0 -15 -2147483648\n");
+        for (int x = 0; x < 10; x++) {
+            sb.append(x * 1000000).append("\n");
+        }
+        return sb.append("\n").toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.BaseTest;
+import com.simplecompiler.interpreter.NativeFunctionManager.Function;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class ProgramLinkerTest extends BaseTest {
+
+    @Test
+    public void testNativeFunctionsBoundByIndex() {
+        CompiledProgram program = new BytecodeLoader().load(compileFileFromResource("/com/simplecompiler/testsources/printTwoValues.scs"));
+        NativeFunctionManager nativeFunctionManager = new NativeFunctionManager();
+        nativeFunctionManager.registerFunctions(new TestPrintFunction());
+        Function[] nativeFunctions = new ProgramLinker().link(program, nativeFunctionManager);
+        Assert.assertEquals(program.getNativeFunctionNames().length, nativeFunctions.length);
+        Assert.assertSame(nativeFunctionManager.findFunction("print"), nativeFunctions[0]);
+    }
+
+    @Test
+    public void testUnknownFunctionFailsBeforeExecution() {
+        Interpreter interpreter = new Interpreter();
+        TestPrintFunction functionHolder = new TestPrintFunction();
+        interpreter.getNativeFunctionManager().registerFunctions(functionHolder);
+        try {
+            interpreter.execute("label main\nenter 0 0\nload-long 1\nsave\ncall print 1\ncall unknown 0\nleave 0 0");
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Cannot find function [unknown]", ex.getMessage());
+        }
+        Assert.assertTrue(functionHolder.getPrintedValues().isEmpty());
+    }
+
+    @Test
+    public void testScriptFunctionArityMismatch() {
+        try {
+            executeBytecode(new Interpreter(), "label f\nenter 0 2\nleave 0 2\nlabel main\nenter 0 0\nload-long 1\nsave\ncall f 1\nleave 0 0");
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Function [f] expects [2] arguments, but called with [1] in function [main]", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testNativeFunctionArityMismatch() {
+        Interpreter interpreter = new Interpreter();
+        interpreter.getNativeFunctionManager().registerFunctions(new FixedArityFunction());
+        try {
+            executeBytecode(interpreter, "label main\nenter 0 0\ncall inc 0\nleave 0 0");
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+            Assert.assertEquals("Function [inc] expects [1] arguments, but called with [0] in function [main]", ex.getMessage());
+        }
+    }
+
+    public static class FixedArityFunction {
+
+        @NativeFunction(name = "inc", argsCount = 1)
+        public int inc(Object[] args) {
+            return (Integer) args[0] + 1;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.BaseTest;
+import com.simplecompiler.frontend.FrontendCompiler;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class ScriptExecutorServiceTest extends BaseTest {
+
+    private final ScriptExecutorService executorService = new ScriptExecutorService(4);
+
+    @After
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testRunningTasksAreLimited() throws Exception {
+        CompiledProgram program = new BytecodeLoader().load(new FrontendCompiler().compile(
+                "(fun main() (print (input)) (wait) (print (* 2 (input))))", "blocking.scs"));
+        List<Future<BlockingFunctions>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(executorService.submit(program, new BlockingFunctions(i)));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            checkEqual(futures.get(i).get(10, TimeUnit.SECONDS).getPrintedValues(), Arrays.asList(i, 2 * i));
+        }
+        Assert.assertTrue(BlockingFunctions.maxRunning.get() <= 4);
+        executorService.shutdown();
+        Assert.assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectsAfterShutdown() throws IOException {
+        executorService.shutdown();
+        executorService.submit(new BytecodeLoader().load(new FrontendCompiler().compile("(fun main() (print 1))", "main.scs")), new TestPrintFunction());
+    }
+
+    @Test
+    public void testFailedThreadCreationReleasesSlot() throws Exception {
+        final AtomicInteger createdThreads = new AtomicInteger();
+        ScriptExecutorService service = new ScriptExecutorService(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                switch (createdThreads.getAndIncrement()) {
+                    case 0:
+                        return null;
+                    case 1:
+                        //thread that is already started cannot be started again
+                        Thread thread = new Thread();
+                        thread.start();
+                        return thread;
+                    default:
+                        return new Thread(runnable);
+                }
+            }
+        });
+        CompiledProgram program = new BytecodeLoader().load(new FrontendCompiler().compile("(fun main() (print 1))", "main.scs"));
+        try {
+            service.submit(program, new TestPrintFunction());
+            Assert.fail();
+        } catch (RejectedExecutionException ex) {
+            Assert.assertEquals("Thread factory did not create a thread", ex.getMessage());
+        }
+        try {
+            service.submit(program, new TestPrintFunction());
+            Assert.fail();
+        } catch (IllegalThreadStateException ex) {
+            //expected
+        }
+
+        checkEqual(service.submit(program, new TestPrintFunction()).get(10, TimeUnit.SECONDS).getPrintedValues(), Arrays.asList(1));
+        service.shutdown();
+        Assert.assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    public static class BlockingFunctions extends BatchExecutorTest.InputFunctions {
+
+        static final AtomicInteger running = new AtomicInteger();
+        static final AtomicInteger maxRunning = new AtomicInteger();
+
+        public BlockingFunctions(int input) {
+            super(input);
+        }
+
+        @NativeFunction(name = "wait")
+        public void waitForIo() throws InterruptedException {
+            int current = running.incrementAndGet();
+            int max = maxRunning.get();
+            while (current > max && !maxRunning.compareAndSet(max, current)) {
+                max = maxRunning.get();
+            }
+            Thread.sleep(5);
+            running.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.simplecompiler.interpreter;
+
+import com.simplecompiler.BaseTest;
+import com.simplecompiler.frontend.FrontendCompiler;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class ScriptSchedulerTest extends BaseTest {
+
+    private final ScriptScheduler scheduler = new ScriptScheduler(1, 100);
+
+    @After
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testShortScriptsAreNotBlockedByEndlessScript() throws Exception {
+        Future<ScriptExecution> endless = scheduler.submit(start("(fun spin(n) (spin (+ n 1)))\n"
+                + "(fun main() (spin 0))", new TestPrintFunction()));
+
+        List<Future<ScriptExecution>> futures = new ArrayList<>();
+        List<BatchExecutorTest.InputFunctions> outputs = new ArrayList<>();
+        CompiledProgram program = new BytecodeLoader().load(new FrontendCompiler().compile(
+                "(fun nfibs (n) (if (< n 2) n (+ (nfibs (- n 1)) (nfibs (- n 2)))))\n"
+                + "(fun main() (print (nfibs (input))))", "short.scs"));
+        for (int i = 0; i < 50; i++) {
+            BatchExecutorTest.InputFunctions output = new BatchExecutorTest.InputFunctions(i % 15);
+            Interpreter interpreter = new Interpreter();
+            interpreter.getNativeFunctionManager().registerFunctions(output);
+            outputs.add(output);
+            futures.add(scheduler.submit(interpreter.start(program)));
+        }
+
+        int[] fibs = new int[]{0, 1, 1, 2, 3, 5, 8, 13, 21, 34, 55, 89, 144, 233, 377};
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertTrue(futures.get(i).get(10, TimeUnit.SECONDS).isFinished());
+            checkEqual(outputs.get(i).getPrintedValues(), Arrays.asList(fibs[i % 15]));
+        }
+        Assert.assertFalse(endless.isDone());
+        Assert.assertTrue(endless.cancel(false));
+    }
+
+    @Test
+    public void testErrorOfScriptCompletesFuture() throws Exception {
+        Interpreter interpreter = new Interpreter();
+        interpreter.setMaxStackSize(1000);
+        interpreter.getNativeFunctionManager().registerFunctions(new TestPrintFunction());
+        Future<ScriptExecution> future = scheduler.submit(interpreter.start(new BytecodeLoader().load(new FrontendCompiler().compile(
+                "(fun depth(n) (+ 1 (depth n)))\n"
+                + "(fun main() (print (depth 1)))", "depth.scs"))));
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof ScriptStackOverflowException);
+        }
+    }
+
+    private ScriptExecution start(String source, Object nativeFunctions) throws IOException {
+        Interpreter interpreter = new Interpreter();
+        interpreter.getNativeFunctionManager().registerFunctions(nativeFunctions);
+        return interpreter.start(new BytecodeLoader().load(new FrontendCompiler().compile(source, "script.scs")));
+    }
+}
@@ -0,0 +1,29 @@
+package com.simplecompiler.interpreter;
+
+/**
+ * Native functions with int signatures, called without boxing
+ *
+ * @author Dmitry
+ */
+public class TestPrimitiveFunctions extends TestPrintFunction {
+
+    @NativeFunction(name = "add3")
+    public static int add3(int a, int b, int c) {
+        return a + b + c;
+    }
+
+    @NativeFunction(name = "sub")
+    public int sub(int a, int b) {
+        return a - b;
+    }
+
+    @NativeFunction(name = "record")
+    private void record(int value) {
+        getPrintedValues().add(value * 10);
+    }
+
+    @NativeFunction(name = "ten")
+    int ten() {
+        return 10;
+    }
+}
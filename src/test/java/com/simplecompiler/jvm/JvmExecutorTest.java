@@ -0,0 +1,126 @@
+package com.simplecompiler.jvm;
+
+import com.simplecompiler.BaseTest;
+import com.simplecompiler.frontend.FrontendCompiler;
+import com.simplecompiler.interpreter.BytecodeLoader;
+import com.simplecompiler.interpreter.CompiledProgram;
+import com.simplecompiler.interpreter.Interpreter;
+import com.simplecompiler.interpreter.NativeFunction;
+import com.simplecompiler.interpreter.NativeFunctionManagerTest;
+import com.simplecompiler.interpreter.TestPrintFunction;
+import com.simplecompiler.interpreter.TestPrimitiveFunctions;
+import com.simplecompiler.optimizer.PeepholeOptimizer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class JvmExecutorTest extends BaseTest {
+
+    private static final String[] SCRIPTS = new String[]{
+        "numberBasis", "printTwoValues", "printMathResultOfTwoValues", "testIf", "testIfMultiline",
+        "defineFunctionAndCallIt", "testBitwiseOperations", "testShiftOperations", "testLogicAndEquality",
+        "functionChain", "recursion", "simpleVariable", "testVariablesInFunctions", "testGlobalVariables", "testForLoop",
+        "memoFib", "tailRecursion"
+    };
+
+    @Test
+    public void testSameOutputAsInterpreter() {
+        for (String script : SCRIPTS) {
+            String bytecode = compileFileFromResource("/com/simplecompiler/testsources/" + script + ".scs");
+            checkEqual(executeBytecode(new JvmExecutor(), bytecode), executeBytecode(new Interpreter(), bytecode));
+            String optimizedBytecode = new PeepholeOptimizer().optimize(bytecode).getBytecode();
+            checkEqual(executeBytecode(new JvmExecutor(), optimizedBytecode), executeBytecode(new Interpreter(), bytecode));
+        }
+    }
+
+    @Test
+    public void testRecursion() throws IOException {
+        String source = readFileFromResource("/com/simplecompiler/testsources/fibCalc.scs").replace("(print (nfibs 40))", "(print (nfibs 30))");
+        String bytecode = new FrontendCompiler().compile(source, "fibCalc.scs");
+        checkEqual(executeBytecode(new JvmExecutor(), bytecode), Arrays.asList(0, 1, 1, 2, 3, 5, 8, 13, 21, 34, 55, 832040));
+    }
+
+    @Test
+    public void testTailCallsAreLoops() throws IOException {
+        //such depth overflows the jvm stack if tail calls are invocations
+        String bytecode = new FrontendCompiler().compile("(fun sum(n acc) (if (= n 0) acc (sum (- n 1) (+ acc n))))\n"
+                + "(fun isEven(n) (if (= n 0) 1 (isOdd (- n 1))))\n"
+                + "(fun isOdd(n) (if (= n 0) 0 (isEven (- n 1))))\n"
+                + "(fun main() (print (sum 1000000 0) (isEven 1000001) (isOdd 1000001)))", "tailCall.scs");
+        checkEqual(executeBytecode(new JvmExecutor(), bytecode), Arrays.asList(1784293664, 0, 1));
+        //functions of one cycle with different numbers of arguments and locals
+        bytecode = new FrontendCompiler().compile("(fun down(n x) (var y (* x 2)) (if (< n 1) y (halve (- n 1))))\n"
+                + "(fun halve(n) (if (= (bitand n 1) 0) (down n (/ n 2)) (down (- n 1) n)))\n"
+                + "(fun main() (print (halve 7) (down 5 3) (+ 1 (halve 100001))))", "tailCycle.scs");
+        checkEqual(executeBytecode(new JvmExecutor(), bytecode), executeBytecode(new Interpreter(), bytecode));
+    }
+
+    @Test
+    public void testAccumulatorPassedToFunctionWithEmptyBody() throws IOException {
+        String bytecode = new FrontendCompiler().compile("(fun id(x)) (fun main() (print (id 5)) (print (+ 1 (id 7))))", "empty.scs");
+        checkEqual(executeBytecode(new JvmExecutor(), bytecode), Arrays.asList(5, 8));
+        checkEqual(executeBytecode(new Interpreter(), bytecode), Arrays.asList(5, 8));
+    }
+
+    @Test
+    public void testPrimitiveNativeFunctions() throws IOException {
+        String bytecode = new FrontendCompiler().compile(NativeFunctionManagerTest.PRIMITIVE_CALLS_SOURCE, "primitive.scs");
+        TestPrimitiveFunctions functionHolder = new TestPrimitiveFunctions();
+        JvmExecutor executor = new JvmExecutor();
+        executor.getNativeFunctionManager().registerFunctions(functionHolder);
+        executor.execute(bytecode);
+        checkEqual(functionHolder.getPrintedValues(), Arrays.asList(6, 6, 10, 70, 10, 6));
+    }
+
+    @Test
+    public void testConcurrentRunsOfOneProgram() throws Exception {
+        //global variable is a static field of the generated class, overlapped runs would print the id of another run
+        final CompiledProgram program = new BytecodeLoader().load(new FrontendCompiler().compile("(var id (nextId))\n"
+                + "(fun main() (for (var i 0) (< i 100000) (var i (+ i 1)) (var x (* i 3))) (print id))", "id.scs"));
+        final JvmExecutor executor = new JvmExecutor();
+        TestPrintFunction functionHolder = new TestPrintFunction();
+        executor.getNativeFunctionManager().registerFunctions(functionHolder);
+        executor.getNativeFunctionManager().registerFunctions(new IdFunctions());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    executor.execute(program);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<Integer> printedValues = new ArrayList<>(functionHolder.getPrintedValues());
+        Collections.sort(printedValues);
+        checkEqual(printedValues, Arrays.asList(1, 2, 3, 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownNativeFunction() throws IOException {
+        String bytecode = new FrontendCompiler().compile("(fun main() (unknown 5))", "unknown.scs");
+        executeBytecode(new JvmExecutor(), bytecode);
+    }
+
+    public static class IdFunctions {
+
+        private final AtomicInteger lastId = new AtomicInteger();
+
+        @NativeFunction(name = "nextId", argsCount = 0)
+        public int nextId(Object[] args) {
+            return lastId.incrementAndGet();
+        }
+    }
+}
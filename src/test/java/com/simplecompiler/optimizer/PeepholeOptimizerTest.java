@@ -0,0 +1,132 @@
+package com.simplecompiler.optimizer;
+
+import com.simplecompiler.BaseTest;
+import com.simplecompiler.frontend.FrontendCompiler;
+import com.simplecompiler.interpreter.Interpreter;
+import java.io.IOException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Dmitry
+ */
+public class PeepholeOptimizerTest extends BaseTest {
+
+    private static final String[] SCRIPTS = new String[]{
+        "numberBasis", "printTwoValues", "printMathResultOfTwoValues", "testIf", "testIfMultiline",
+        "defineFunctionAndCallIt", "testBitwiseOperations", "testShiftOperations", "testLogicAndEquality",
+        "functionChain", "recursion", "simpleVariable", "testVariablesInFunctions", "testGlobalVariables", "testForLoop"
+    };
+
+    @Test
+    public void testSameOutputAfterOptimization() {
+        for (String script : SCRIPTS) {
+            String bytecode = compileFileFromResource("/com/simplecompiler/testsources/" + script + ".scs");
+            OptimizationResult result = new PeepholeOptimizer().optimize(bytecode);
+            checkEqual(executeBytecode(new Interpreter(), result.getBytecode()), executeBytecode(new Interpreter(), bytecode));
+        }
+    }
+
+    @Test
+    public void testImmediateOperands() throws IOException {
+        String bytecode = new FrontendCompiler().compile("(fun dec(n) (- n 1)) (fun inc(n) (+ 1 n)) (fun small(n) (< 2 n)) (fun main() (print (dec 5) (inc 5) (small 5)))", "immediate.scs");
+        OptimizationResult result = new PeepholeOptimizer().optimize(bytecode);
+        Assert.assertEquals(
+                "label dec\n"
+                + "enter 0 1\n"
+                + "load-arg 0\n"
+                + "sub-long 1\n"
+                + "leave 0 1\n"
+                + "\n"
+                + "label inc\n"
+                + "enter 0 1\n"
+                + "load-arg 0\n"
+                + "add-long 1\n"
+                + "leave 0 1\n"
+                + "\n"
+                + "label small\n"
+                + "enter 0 1\n"
+                + "load-arg 0\n"
+                + "more-long 2\n"
+                + "leave 0 1\n"
+                + "\n",
+                result.getBytecode().substring(0, result.getBytecode().indexOf("label main")));
+        Assert.assertEquals(2, (int) result.getRemovedInstructions().get("dec"));
+        Assert.assertEquals(0, (int) result.getRemovedInstructions().get("main"));
+        checkEqual(executeBytecode(new Interpreter(), result.getBytecode()), executeBytecode(new Interpreter(), bytecode));
+    }
+
+    @Test
+    public void testJumpThreadingAndDeadCode() {
+        String bytecode = "label main\n"
+                + "enter 0 0\n"
+                + "load-long 0\n"
+                + "branch-false a\n"
+                + "load-long 1\n"
+                + "branch b\n"
+                + "load-long 2\n"
+                + "label a\n"
+                + "branch b\n"
+                + "label b\n"
+                + "save\n"
+                + "call print 1\n"
+                + "leave 0 0\n";
+        OptimizationResult result = new PeepholeOptimizer().optimize(bytecode);
+        Assert.assertEquals(
+                "label main\n"
+                + "enter 0 0\n"
+                + "load-long 0\n"
+                + "branch-false b\n"
+                + "load-long 1\n"
+                + "label b\n"
+                + "save\n"
+                + "call print 1\n"
+                + "leave 0 0\n"
+                + "\n",
+                result.getBytecode());
+        Assert.assertEquals(3, result.getTotalRemovedInstructions());
+        checkEqual(executeBytecode(new Interpreter(), result.getBytecode()), executeBytecode(new Interpreter(), bytecode));
+    }
+
+    @Test
+    public void testRedundantLoadStore() {
+        String bytecode = "label main\n"
+                + "enter 1 0\n"
+                + "load-long 4\n"
+                + "store-local-var 0\n"
+                + "load-local-var 0\n"
+                + "store-local-var 0\n"
+                + "load-long 7\n"
+                + "load-local-var 0\n"
+                + "save\n"
+                + "call print 1\n"
+                + "leave 1 0\n";
+        OptimizationResult result = new PeepholeOptimizer().optimize(bytecode);
+        Assert.assertEquals(
+                "label main\n"
+                + "enter 1 0\n"
+                + "load-long 4\n"
+                + "store-local-var 0\n"
+                + "save\n"
+                + "call print 1\n"
+                + "leave 1 0\n"
+                + "\n",
+                result.getBytecode());
+        checkEqual(executeBytecode(new Interpreter(), result.getBytecode()), executeBytecode(new Interpreter(), bytecode));
+    }
+
+    @Test
+    public void testCompilerOption() throws IOException {
+        String source = readFileFromResource("/com/simplecompiler/testsources/testForLoop.scs");
+        FrontendCompiler compiler = new FrontendCompiler();
+        String bytecode = compiler.compile(source, "testForLoop.scs");
+        String optionsDescription = compiler.getOptionsDescription();
+        compiler.setOptimize(true);
+        Assert.assertNotEquals(optionsDescription, compiler.getOptionsDescription());
+        String optimizedBytecode = compiler.compile(source, "testForLoop.scs");
+        Assert.assertEquals(new PeepholeOptimizer().optimize(bytecode).getBytecode(), optimizedBytecode);
+        Assert.assertTrue(optimizedBytecode.length() < bytecode.length());
+        Assert.assertTrue(compiler.compileOptimized(source, "testForLoop.scs").toReport().startsWith("removed instructions: "));
+        checkEqual(executeBytecode(new Interpreter(), optimizedBytecode), executeBytecode(new Interpreter(), bytecode));
+    }
+}